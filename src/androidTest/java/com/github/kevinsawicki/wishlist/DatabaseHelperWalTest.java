@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests of readers running concurrently with the writer of a
+ * {@link DatabaseHelper} using write-ahead logging
+ * <p>
+ * {@link #testMixedThroughput()} logs the reads and writes completed with and
+ * without write-ahead logging under the <code>DatabaseHelperWalTest</code>
+ * tag.
+ */
+public class DatabaseHelperWalTest extends AndroidTestCase {
+
+  private static final String NAME = "wal_test.db";
+
+  private static final String TAG = "DatabaseHelperWalTest";
+
+  private static class TestHelper extends DatabaseHelper {
+
+    TestHelper(final Context context, final boolean writeAheadLogging) {
+      super(context, NAME, null, 1);
+      setWriteAheadLogging(writeAheadLogging);
+    }
+
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+      database
+          .execSQL("CREATE TABLE rows (_id INTEGER PRIMARY KEY, value TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(final SQLiteDatabase database, final int oldVersion,
+        final int newVersion) {
+    }
+
+    long count() {
+      final Cursor cursor = getReadable().rawQuery(
+          "SELECT COUNT(*) FROM rows", null);
+      try {
+        cursor.moveToFirst();
+        return cursor.getLong(0);
+      } finally {
+        cursor.close();
+      }
+    }
+
+    void insert(final int rows) {
+      run(new Transaction() {
+
+        public void perform(final SQLiteDatabase database) {
+          for (int i = 0; i < rows; i++)
+            database.execSQL("INSERT INTO rows (value) VALUES ('row')");
+        }
+      });
+    }
+  }
+
+  private TestHelper helper;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    getContext().deleteDatabase(NAME);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (helper != null)
+      helper.close();
+    getContext().deleteDatabase(NAME);
+
+    super.tearDown();
+  }
+
+  /**
+   * Reader runs while a write transaction is open and sees the last committed
+   * rows
+   *
+   * @throws Exception
+   */
+  public void testReaderSeesSnapshotDuringWrite() throws Exception {
+    if (SDK_INT < HONEYCOMB)
+      return;
+
+    helper = new TestHelper(getContext(), true);
+    helper.insert(1);
+
+    final CountDownLatch written = new CountDownLatch(1);
+    final CountDownLatch read = new CountDownLatch(1);
+    final Thread writer = new Thread() {
+
+      public void run() {
+        helper.run(new DatabaseHelper.Transaction() {
+
+          public void perform(final SQLiteDatabase database) {
+            database.execSQL("INSERT INTO rows (value) VALUES ('row')");
+            written.countDown();
+            try {
+              // Hold the transaction open until the reader is done
+              read.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+      }
+    };
+    writer.start();
+    assertTrue(written.await(5, TimeUnit.SECONDS));
+
+    final long start = System.nanoTime();
+    final long count = helper.count();
+    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+        - start);
+    read.countDown();
+    writer.join();
+
+    assertEquals("Reader saw uncommitted row", 1, count);
+    assertTrue("Reader waited " + elapsed + "ms for the writer",
+        elapsed < 1000);
+    assertEquals(2, helper.count());
+  }
+
+  private long[] runMixed(final boolean writeAheadLogging)
+      throws InterruptedException {
+    getContext().deleteDatabase(NAME);
+    helper = new TestHelper(getContext(), writeAheadLogging);
+    helper.insert(100);
+
+    final AtomicLong reads = new AtomicLong();
+    final AtomicLong writes = new AtomicLong();
+    final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    final Thread[] threads = new Thread[4];
+    threads[0] = new Thread() {
+
+      public void run() {
+        while (System.nanoTime() < end) {
+          helper.insert(10);
+          writes.incrementAndGet();
+        }
+      }
+    };
+    for (int i = 1; i < threads.length; i++)
+      threads[i] = new Thread() {
+
+        public void run() {
+          while (System.nanoTime() < end) {
+            helper.count();
+            reads.incrementAndGet();
+          }
+        }
+      };
+    for (Thread thread : threads)
+      thread.start();
+    for (Thread thread : threads)
+      thread.join();
+
+    helper.close();
+    helper = null;
+    return new long[] { reads.get(), writes.get() };
+  }
+
+  /**
+   * Mixed throughput of three readers and one writer over two seconds with
+   * and without write-ahead logging
+   *
+   * @throws Exception
+   */
+  public void testMixedThroughput() throws Exception {
+    if (SDK_INT < HONEYCOMB)
+      return;
+
+    final long[] rollback = runMixed(false);
+    final long[] wal = runMixed(true);
+    Log.i(TAG, "Rollback journal: " + rollback[0] + " reads, " + rollback[1]
+        + " write transactions");
+    Log.i(TAG, "Write-ahead log: " + wal[0] + " reads, " + wal[1]
+        + " write transactions");
+
+    assertTrue(wal[0] > 0);
+    assertTrue(wal[1] > 0);
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of {@link TypedItems} against the list of wrapped items
+ * that {@link MultiTypeAdapter} used before
+ * <p>
+ * Run on a desktop JVM, allocations are measured with the HotSpot thread
+ * allocation counter:
+ *
+ * <pre>
+ * java -cp classes com.github.kevinsawicki.wishlist.TypedItemsBenchmark
+ * </pre>
+ */
+public class TypedItemsBenchmark {
+
+  private static final int ITEMS = 100000;
+
+  private static final int LOOKUPS = 10000000;
+
+  private static final int ROUNDS = 10;
+
+  private static class Item {
+
+    final int type;
+
+    final Object item;
+
+    final long id;
+
+    Item(final int type, final Object item, final long id) {
+      this.type = type;
+      this.item = item;
+      this.id = id;
+    }
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread()
+        .getId());
+  }
+
+  private static List<Item> fillList(final Object[] source) {
+    final StableIds ids = new StableIds();
+    final List<Item> items = new ArrayList<Item>();
+    for (int i = 0; i < source.length; i++)
+      items.add(new Item(i % 3, source[i], ids.acquire(source[i])));
+    return items;
+  }
+
+  private static long fillIds(final Object[] source) {
+    final StableIds ids = new StableIds();
+    long sum = 0;
+    for (Object item : source)
+      sum += ids.acquire(item);
+    return sum;
+  }
+
+  private static TypedItems fillTyped(final Object[] source) {
+    final TypedItems items = new TypedItems();
+    for (int i = 0; i < source.length; i++)
+      items.add(i % 3, source[i]);
+    return items;
+  }
+
+  private static TypedItems fillTypedBulk(final Object[] source) {
+    final TypedItems items = new TypedItems();
+    items.addAll(0, source);
+    return items;
+  }
+
+  private static long lookupList(final List<Item> items,
+      final int[] positions) {
+    long sum = 0;
+    for (int position : positions) {
+      final Item item = items.get(position);
+      sum += item.type + item.id + (item.item != null ? 1 : 0);
+    }
+    return sum;
+  }
+
+  private static long lookupTyped(final TypedItems items,
+      final int[] positions) {
+    long sum = 0;
+    for (int position : positions)
+      sum += items.getType(position) + items.getId(position)
+          + (items.getItem(position) != null ? 1 : 0);
+    return sum;
+  }
+
+  /**
+   * @param args
+   */
+  public static void main(final String[] args) {
+    final Object[] source = new Object[ITEMS];
+    for (int i = 0; i < ITEMS; i++)
+      source[i] = Integer.valueOf(i);
+    final Random random = new Random(42);
+    final int[] positions = new int[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++)
+      positions[i] = random.nextInt(ITEMS);
+
+    long idBytes = 0, listBytes = 0, typedBytes = 0, bulkBytes = 0;
+    long listNanos = 0, typedNanos = 0;
+    long checksum = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = allocatedBytes();
+      checksum += fillIds(source);
+      idBytes = allocatedBytes() - start;
+      start = allocatedBytes();
+      final List<Item> list = fillList(source);
+      listBytes = allocatedBytes() - start;
+      start = allocatedBytes();
+      final TypedItems typed = fillTyped(source);
+      typedBytes = allocatedBytes() - start;
+      start = allocatedBytes();
+      checksum += fillTypedBulk(source).size();
+      bulkBytes = allocatedBytes() - start;
+
+      start = System.nanoTime();
+      checksum += lookupList(list, positions);
+      listNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      checksum += lookupTyped(typed, positions);
+      typedNanos = System.nanoTime() - start;
+    }
+
+    // Id assignment allocates the same for both and is not counted
+    System.out.println("Allocated filling " + ITEMS + " items, excluding "
+        + idBytes / 1024 + " KiB of stable ids, last of " + ROUNDS
+        + " rounds");
+    System.out.println("  list of items:  " + (listBytes - idBytes) / 1024
+        + " KiB");
+    System.out.println("  typed items:    " + (typedBytes - idBytes) / 1024
+        + " KiB");
+    System.out.println("  typed bulk add: " + (bulkBytes - idBytes) / 1024
+        + " KiB");
+    System.out.println("Looking up type, item and id " + LOOKUPS + " times");
+    System.out.println("  list of items:  " + listNanos / LOOKUPS + "."
+        + listNanos * 10 / LOOKUPS % 10 + " ns per lookup");
+    System.out.println("  typed items:    " + typedNanos / LOOKUPS + "."
+        + typedNanos * 10 / LOOKUPS % 10 + " ns per lookup");
+    System.out.println("(checksum " + checksum + ")");
+  }
+}
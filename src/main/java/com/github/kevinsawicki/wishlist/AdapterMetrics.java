@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR2;
+import android.annotation.TargetApi;
+import android.os.Trace;
+
+import java.util.Arrays;
+
+/**
+ * Counts and latency histograms of view inflation and binding per view type
+ * <p>
+ * Histogram bucket zero counts operations taking less than a microsecond and
+ * bucket <code>i</code> counts operations taking from 2<sup>i-1</sup> up to
+ * 2<sup>i</sup> microseconds, the last bucket also counts all longer
+ * operations.
+ * <p>
+ * Adapters only record on the main thread so no synchronization is used, the
+ * metrics should also be read and reset on the main thread.
+ */
+public class AdapterMetrics {
+
+  /**
+   * Number of histogram buckets
+   */
+  public static final int BUCKETS = 20;
+
+  private static final int INFLATE = 0;
+
+  private static final int BIND = 1;
+
+  private static final String[] NAMES = { "inflate", "bind" };
+
+  private long[][] counts = new long[2][1];
+
+  private long[][] nanos = new long[2][1];
+
+  private long[][][] histograms = new long[2][1][BUCKETS];
+
+  private String[][] sections = new String[2][1];
+
+  private boolean tracing;
+
+  private boolean[] traced = new boolean[2];
+
+  private int depth;
+
+  /**
+   * Set whether operations are also emitted as {@link Trace} sections on
+   * devices that support them
+   * <p>
+   * Operations begun before the change still end the section only if they
+   * began one
+   *
+   * @param tracing
+   * @return this metrics
+   */
+  public AdapterMetrics setTracing(final boolean tracing) {
+    this.tracing = tracing;
+    return this;
+  }
+
+  /**
+   * Begin inflating a view of the given type
+   *
+   * @param type
+   * @return start time to pass to {@link #endInflate(int, long)}
+   */
+  public long beginInflate(final int type) {
+    return begin(INFLATE, type);
+  }
+
+  /**
+   * End inflating a view of the given type
+   *
+   * @param type
+   * @param start
+   */
+  public void endInflate(final int type, final long start) {
+    end(INFLATE, type, start);
+  }
+
+  /**
+   * Begin binding a view of the given type
+   *
+   * @param type
+   * @return start time to pass to {@link #endBind(int, long)}
+   */
+  public long beginBind(final int type) {
+    return begin(BIND, type);
+  }
+
+  /**
+   * End binding a view of the given type
+   *
+   * @param type
+   * @param start
+   */
+  public void endBind(final int type, final long start) {
+    end(BIND, type, start);
+  }
+
+  private void ensureType(final int type) {
+    final int length = counts[0].length;
+    if (type < length)
+      return;
+
+    final int grown = Math.max(type + 1, length * 2);
+    for (int operation = 0; operation < 2; operation++) {
+      counts[operation] = Arrays.copyOf(counts[operation], grown);
+      nanos[operation] = Arrays.copyOf(nanos[operation], grown);
+      sections[operation] = Arrays.copyOf(sections[operation], grown);
+      histograms[operation] = Arrays.copyOf(histograms[operation], grown);
+      for (int i = length; i < grown; i++)
+        histograms[operation][i] = new long[BUCKETS];
+    }
+  }
+
+  private long begin(final int operation, final int type) {
+    ensureType(type);
+    // Remember whether a section was begun so its end stays balanced even if
+    // tracing is toggled while the operation runs
+    final boolean trace = tracing && SDK_INT >= JELLY_BEAN_MR2;
+    if (depth == traced.length)
+      traced = Arrays.copyOf(traced, depth * 2);
+    traced[depth++] = trace;
+    if (trace)
+      beginSection(operation, type);
+    return System.nanoTime();
+  }
+
+  private void end(final int operation, final int type, final long start) {
+    final long elapsed = System.nanoTime() - start;
+    if (depth > 0 && traced[--depth])
+      endSection();
+
+    counts[operation][type]++;
+    nanos[operation][type] += elapsed;
+    final int bucket = 64 - Long.numberOfLeadingZeros(elapsed / 1000);
+    histograms[operation][type][Math.min(bucket, BUCKETS - 1)]++;
+  }
+
+  @TargetApi(JELLY_BEAN_MR2)
+  private void beginSection(final int operation, final int type) {
+    String section = sections[operation][type];
+    if (section == null) {
+      section = NAMES[operation] + " view type " + type;
+      sections[operation][type] = section;
+    }
+    Trace.beginSection(section);
+  }
+
+  @TargetApi(JELLY_BEAN_MR2)
+  private void endSection() {
+    Trace.endSection();
+  }
+
+  /**
+   * Get number of view types with recorded operations
+   *
+   * @return view type count
+   */
+  public int getViewTypeCount() {
+    return counts[0].length;
+  }
+
+  /**
+   * Get number of views of the given type inflated
+   *
+   * @param type
+   * @return inflate count
+   */
+  public long getInflateCount(final int type) {
+    return type < counts[INFLATE].length ? counts[INFLATE][type] : 0;
+  }
+
+  /**
+   * Get number of views of the given type bound
+   *
+   * @param type
+   * @return bind count
+   */
+  public long getBindCount(final int type) {
+    return type < counts[BIND].length ? counts[BIND][type] : 0;
+  }
+
+  /**
+   * Get total time spent inflating views of the given type
+   *
+   * @param type
+   * @return nanoseconds
+   */
+  public long getInflateNanos(final int type) {
+    return type < nanos[INFLATE].length ? nanos[INFLATE][type] : 0;
+  }
+
+  /**
+   * Get total time spent binding views of the given type
+   *
+   * @param type
+   * @return nanoseconds
+   */
+  public long getBindNanos(final int type) {
+    return type < nanos[BIND].length ? nanos[BIND][type] : 0;
+  }
+
+  /**
+   * Get copy of the inflate latency histogram of the given type
+   *
+   * @param type
+   * @return histogram of {@link #BUCKETS} counts
+   */
+  public long[] getInflateHistogram(final int type) {
+    return type < histograms[INFLATE].length ? histograms[INFLATE][type]
+        .clone() : new long[BUCKETS];
+  }
+
+  /**
+   * Get copy of the bind latency histogram of the given type
+   *
+   * @param type
+   * @return histogram of {@link #BUCKETS} counts
+   */
+  public long[] getBindHistogram(final int type) {
+    return type < histograms[BIND].length ? histograms[BIND][type].clone()
+        : new long[BUCKETS];
+  }
+
+  /**
+   * Reset all counts and histograms
+   *
+   * @return this metrics
+   */
+  public AdapterMetrics reset() {
+    for (int operation = 0; operation < 2; operation++) {
+      Arrays.fill(counts[operation], 0);
+      Arrays.fill(nanos[operation], 0);
+      for (long[] histogram : histograms[operation])
+        Arrays.fill(histogram, 0);
+    }
+    return this;
+  }
+
+  private static void dump(final StringBuilder output, final String name,
+      final long count, final long nanos, final long[] histogram) {
+    output.append(' ').append(name).append(' ').append(count);
+    if (count == 0)
+      return;
+
+    output.append(" avg ").append(nanos / count / 1000).append("us [");
+    int last = histogram.length - 1;
+    while (last > 0 && histogram[last] == 0)
+      last--;
+    for (int i = 0; i <= last; i++) {
+      if (i > 0)
+        output.append(' ');
+      output.append(histogram[i]);
+    }
+    output.append(']');
+  }
+
+  /**
+   * Dump counts, average latencies and histograms of each view type
+   * <p>
+   * Histograms are written from bucket zero up to the last non-empty bucket
+   *
+   * @return multi-line summary
+   */
+  public String dump() {
+    final StringBuilder output = new StringBuilder();
+    for (int type = 0; type < getViewTypeCount(); type++) {
+      if (counts[INFLATE][type] == 0 && counts[BIND][type] == 0)
+        continue;
+
+      output.append("type ").append(type).append(':');
+      dump(output, NAMES[INFLATE], counts[INFLATE][type],
+          nanos[INFLATE][type], histograms[INFLATE][type]);
+      output.append(',');
+      dump(output, NAMES[BIND], counts[BIND][type], nanos[BIND][type],
+          histograms[BIND][type]);
+      output.append('\n');
+    }
+    return output.toString();
+  }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import android.annotation.TargetApi;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Bulk write of rows into a table using statements compiled once
+ * <p>
+ * Column values are bound directly to the compiled statements by a
+ * {@link Binder} instead of being collected into
+ * {@link android.content.ContentValues}. Writes are usually run with
+ * {@link DatabaseHelper#run(BulkInsert, Iterable)} which commits every
+ * {@link #getChunkSize()} rows.
+ * <p>
+ * Upserts are done by updating the row matching the key columns and inserting
+ * the row if none was updated. Before Honeycomb the number of updated rows is
+ * not available so each row is inserted if missing and then updated.
+ *
+ * @param <T>
+ *          item type
+ */
+public class BulkInsert<T> {
+
+  /**
+   * Write mode
+   */
+  public static enum Mode {
+
+    /**
+     * Insert rows, failing on conflicts
+     */
+    INSERT,
+
+    /**
+     * Insert rows, replacing conflicting rows
+     */
+    REPLACE,
+
+    /**
+     * Update rows matching the key columns and insert all other rows
+     */
+    UPSERT
+  }
+
+  /**
+   * Binder of item values to a row
+   * <p>
+   * Columns not bound for an item are written as null
+   *
+   * @param <T>
+   *          item type
+   */
+  public static interface Binder<T> {
+
+    /**
+     * Bind values of item to row
+     *
+     * @param row
+     * @param item
+     */
+    void bind(Row row, T item);
+  }
+
+  /**
+   * Row being written whose columns are indexed in the order given to
+   * {@link BulkInsert#BulkInsert(String, Binder, String...)}
+   */
+  public static class Row {
+
+    private SQLiteStatement first;
+
+    private SQLiteStatement second;
+
+    /**
+     * Bind null
+     *
+     * @param column
+     * @return this row
+     */
+    public Row bindNull(final int column) {
+      first.bindNull(column + 1);
+      if (second != null)
+        second.bindNull(column + 1);
+      return this;
+    }
+
+    /**
+     * Bind long
+     *
+     * @param column
+     * @param value
+     * @return this row
+     */
+    public Row bindLong(final int column, final long value) {
+      first.bindLong(column + 1, value);
+      if (second != null)
+        second.bindLong(column + 1, value);
+      return this;
+    }
+
+    /**
+     * Bind double
+     *
+     * @param column
+     * @param value
+     * @return this row
+     */
+    public Row bindDouble(final int column, final double value) {
+      first.bindDouble(column + 1, value);
+      if (second != null)
+        second.bindDouble(column + 1, value);
+      return this;
+    }
+
+    /**
+     * Bind string or null
+     *
+     * @param column
+     * @param value
+     * @return this row
+     */
+    public Row bindString(final int column, final String value) {
+      if (value == null)
+        return bindNull(column);
+
+      first.bindString(column + 1, value);
+      if (second != null)
+        second.bindString(column + 1, value);
+      return this;
+    }
+
+    /**
+     * Bind blob or null
+     *
+     * @param column
+     * @param value
+     * @return this row
+     */
+    public Row bindBlob(final int column, final byte[] value) {
+      if (value == null)
+        return bindNull(column);
+
+      first.bindBlob(column + 1, value);
+      if (second != null)
+        second.bindBlob(column + 1, value);
+      return this;
+    }
+  }
+
+  private final String table;
+
+  private final String[] columns;
+
+  private final Binder<T> binder;
+
+  private final Row row = new Row();
+
+  private Mode mode = Mode.INSERT;
+
+  private String[] keyColumns = new String[0];
+
+  private int chunkSize = 500;
+
+  private SQLiteStatement insert;
+
+  private SQLiteStatement update;
+
+  /**
+   * Create bulk insert into columns of table
+   *
+   * @param table
+   * @param binder
+   * @param columns
+   */
+  public BulkInsert(final String table, final Binder<T> binder,
+      final String... columns) {
+    if (columns.length == 0)
+      throw new IllegalArgumentException("At least one column is required");
+
+    this.table = table;
+    this.binder = binder;
+    this.columns = columns;
+  }
+
+  /**
+   * Get table written to
+   *
+   * @return table name
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * Set write mode
+   *
+   * @param mode
+   * @return this insert
+   */
+  public BulkInsert<T> setMode(final Mode mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  /**
+   * Set columns identifying existing rows to update in {@link Mode#UPSERT}
+   * mode
+   *
+   * @param keyColumns
+   * @return this insert
+   */
+  public BulkInsert<T> setKeyColumns(final String... keyColumns) {
+    for (String key : keyColumns)
+      if (!Arrays.asList(columns).contains(key))
+        throw new IllegalArgumentException("Unknown key column: " + key);
+
+    this.keyColumns = keyColumns;
+    return this;
+  }
+
+  /**
+   * Set number of rows committed in each transaction
+   *
+   * @param chunkSize
+   * @return this insert
+   */
+  public BulkInsert<T> setChunkSize(final int chunkSize) {
+    if (chunkSize < 1)
+      throw new IllegalArgumentException("Chunk size must be positive");
+
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * Get number of rows committed in each transaction
+   *
+   * @return chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  private boolean isKey(final String column) {
+    for (String key : keyColumns)
+      if (key.equals(column))
+        return true;
+    return false;
+  }
+
+  private String createInsertSql() {
+    final StringBuilder sql = new StringBuilder("INSERT");
+    if (mode == Mode.REPLACE)
+      sql.append(" OR REPLACE");
+    else if (mode == Mode.UPSERT)
+      sql.append(" OR IGNORE");
+    sql.append(" INTO ").append(table).append(" (");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0)
+        sql.append(',');
+      sql.append(columns[i]);
+    }
+    sql.append(") VALUES (");
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0)
+        sql.append(',');
+      sql.append('?').append(i + 1);
+    }
+    return sql.append(')').toString();
+  }
+
+  private String createUpdateSql() {
+    // Numbered parameters let both statements share the column indices
+    final StringBuilder sql = new StringBuilder("UPDATE ").append(table)
+        .append(" SET ");
+    boolean first = true;
+    for (int i = 0; i < columns.length; i++)
+      if (!isKey(columns[i])) {
+        if (!first)
+          sql.append(',');
+        sql.append(columns[i]).append("=?").append(i + 1);
+        first = false;
+      }
+    if (first)
+      return null;
+
+    sql.append(" WHERE ");
+    first = true;
+    for (int i = 0; i < columns.length; i++)
+      if (isKey(columns[i])) {
+        if (!first)
+          sql.append(" AND ");
+        sql.append(columns[i]).append("=?").append(i + 1);
+        first = false;
+      }
+    return sql.toString();
+  }
+
+  /**
+   * Compile statements against database
+   * <p>
+   * Statements must be closed with {@link #close()} when done writing
+   *
+   * @param database
+   * @return this insert
+   */
+  public BulkInsert<T> compile(final SQLiteDatabase database) {
+    close();
+
+    if (mode == Mode.UPSERT && keyColumns.length == 0)
+      throw new IllegalStateException("Upsert requires key columns");
+
+    insert = database.compileStatement(createInsertSql());
+    if (mode == Mode.UPSERT) {
+      final String updateSql = createUpdateSql();
+      if (updateSql != null)
+        update = database.compileStatement(updateSql);
+    }
+    return this;
+  }
+
+  /**
+   * Write up to the chunk size of items to the compiled statements
+   * <p>
+   * This method should be called inside a transaction
+   *
+   * @param items
+   * @return number of items written
+   */
+  public int write(final Iterator<? extends T> items) {
+    if (insert == null)
+      throw new IllegalStateException("Statements are not compiled");
+
+    int written = 0;
+    while (written < chunkSize && items.hasNext()) {
+      final T item = items.next();
+      // Columns the binder skips are written as null, not the previous value
+      insert.clearBindings();
+      if (update != null)
+        update.clearBindings();
+      if (update != null && SDK_INT >= HONEYCOMB) {
+        row.first = update;
+        row.second = insert;
+        binder.bind(row, item);
+        if (executeUpdateDelete(update) == 0)
+          insert.executeInsert();
+      } else {
+        row.first = insert;
+        row.second = update;
+        binder.bind(row, item);
+        insert.executeInsert();
+        if (update != null)
+          update.execute();
+      }
+      written++;
+    }
+    return written;
+  }
+
+  @TargetApi(HONEYCOMB)
+  private static int executeUpdateDelete(final SQLiteStatement statement) {
+    return statement.executeUpdateDelete();
+  }
+
+  /**
+   * Close compiled statements
+   *
+   * @return this insert
+   */
+  public BulkInsert<T> close() {
+    if (insert != null) {
+      insert.close();
+      insert = null;
+    }
+    if (update != null) {
+      update.close();
+      update = null;
+    }
+    return this;
+  }
+}
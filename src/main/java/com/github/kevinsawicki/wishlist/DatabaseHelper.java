@@ -15,11 +15,20 @@
  */
 package com.github.kevinsawicki.wishlist;
 
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Iterator;
+import java.util.concurrent.Future;
 
 /**
  * Helper for working with a SQLite database
@@ -39,6 +48,16 @@ public abstract class DatabaseHelper extends SQLiteOpenHelper {
     void perform(SQLiteDatabase database);
   }
 
+  private TransactionQueue queue;
+
+  private boolean writeAheadLogging;
+
+  private int statementCacheSize = 25;
+
+  private StatementCache statements;
+
+  private QueryCache queries;
+
   /**
    * Create database helper
    *
@@ -52,6 +71,128 @@ public abstract class DatabaseHelper extends SQLiteOpenHelper {
     super(context, name, factory, version);
   }
 
+  /**
+   * Set whether the database uses write-ahead logging
+   * <p>
+   * With write-ahead logging enabled queries from different threads run on
+   * separate connections concurrently with the writer and each query reads a
+   * consistent snapshot of the last committed data. This must be called
+   * before the database is first opened and has no effect before Honeycomb.
+   * Subclasses overriding {@link #onOpen(SQLiteDatabase)} must call the super
+   * implementation.
+   *
+   * @param enabled
+   * @return this helper
+   */
+  public DatabaseHelper setWriteAheadLogging(final boolean enabled) {
+    writeAheadLogging = enabled;
+    if (SDK_INT >= JELLY_BEAN)
+      setWriteAheadLoggingEnabledCompat(enabled);
+    return this;
+  }
+
+  /**
+   * Is write-ahead logging requested for this database?
+   *
+   * @return true if enabled, false otherwise
+   */
+  public boolean isWriteAheadLogging() {
+    return writeAheadLogging;
+  }
+
+  @TargetApi(JELLY_BEAN)
+  private void setWriteAheadLoggingEnabledCompat(final boolean enabled) {
+    setWriteAheadLoggingEnabled(enabled);
+  }
+
+  /**
+   * Set number of compiled statements cached by SQL
+   * <p>
+   * This sizes both {@link #getStatementCache()} and the statement cache
+   * SQLite keeps for queries, which is limited to
+   * {@link SQLiteDatabase#MAX_SQL_CACHE_SIZE}. This must be called before the
+   * database is first opened.
+   *
+   * @param size
+   * @return this helper
+   */
+  public DatabaseHelper setStatementCacheSize(final int size) {
+    if (size < 1)
+      throw new IllegalArgumentException("Cache size must be positive");
+
+    statementCacheSize = size;
+    return this;
+  }
+
+  /**
+   * Get cache of compiled statements used by
+   * {@link #acquireStatement(String)}
+   *
+   * @return statement cache
+   */
+  protected synchronized StatementCache getStatementCache() {
+    if (statements == null)
+      statements = new StatementCache(statementCacheSize);
+    return statements;
+  }
+
+  /**
+   * Check out statement compiled from SQL against the writable database
+   * <p>
+   * The statement must be returned with
+   * {@link #releaseStatement(SQLiteStatement)} once executed
+   *
+   * @param sql
+   * @return statement or null if the database could not be opened
+   */
+  protected SQLiteStatement acquireStatement(final String sql) {
+    final SQLiteDatabase database = getWritable();
+    if (database == null)
+      return null;
+
+    return getStatementCache().acquire(database, sql);
+  }
+
+  /**
+   * Return statement acquired with {@link #acquireStatement(String)}
+   *
+   * @param statement
+   */
+  protected void releaseStatement(final SQLiteStatement statement) {
+    getStatementCache().release(statement);
+  }
+
+  @TargetApi(HONEYCOMB)
+  @Override
+  public void onOpen(final SQLiteDatabase database) {
+    super.onOpen(database);
+
+    if (SDK_INT >= HONEYCOMB)
+      database.setMaxSqlCacheSize(Math.min(statementCacheSize,
+          SQLiteDatabase.MAX_SQL_CACHE_SIZE));
+
+    // Jelly Bean and later enable it through the open helper itself
+    if (writeAheadLogging && SDK_INT >= HONEYCOMB && SDK_INT < JELLY_BEAN
+        && !database.isReadOnly())
+      database.enableWriteAheadLogging();
+  }
+
+  /**
+   * Begin a transaction on database
+   * <p>
+   * Transactions are begun in immediate mode when write-ahead logging is
+   * enabled so readers are not locked out while the transaction runs
+   *
+   * @param database
+   */
+  @TargetApi(HONEYCOMB)
+  protected void beginTransaction(final SQLiteDatabase database) {
+    if (writeAheadLogging && SDK_INT >= HONEYCOMB)
+      database.beginTransactionNonExclusive();
+    else
+      database.beginTransaction();
+  }
+
   /**
    * Get readable database
    *
@@ -99,7 +240,7 @@ public abstract class DatabaseHelper extends SQLiteOpenHelper {
     if (database == null)
       return false;
 
-    database.beginTransaction();
+    beginTransaction(database);
     try {
       transaction.perform(database);
       database.setTransactionSuccessful();
@@ -108,4 +249,182 @@ public abstract class DatabaseHelper extends SQLiteOpenHelper {
     }
     return true;
   }
+
+  /**
+   * Run given {@link Transaction} and invalidate cached query results reading
+   * the given tables
+   *
+   * @param transaction
+   * @param tables
+   *          tables written by the transaction
+   * @return true if transaction completed, false otherwise
+   */
+  protected boolean run(final Transaction transaction, final String... tables) {
+    try {
+      return run(transaction);
+    } finally {
+      invalidate(tables);
+    }
+  }
+
+  /**
+   * Set maximum estimated size in bytes of query results cached by
+   * {@link #query(String, String[], String...)}
+   * <p>
+   * Results are not cached until a size is set
+   *
+   * @param maxBytes
+   * @return this helper
+   */
+  public synchronized DatabaseHelper setQueryCacheSize(final int maxBytes) {
+    queries = maxBytes > 0 ? new QueryCache(maxBytes) : null;
+    return this;
+  }
+
+  /**
+   * Get cache of query results
+   *
+   * @return query cache or null if not enabled
+   */
+  protected synchronized QueryCache getQueryCache() {
+    return queries;
+  }
+
+  /**
+   * Invalidate cached query results reading the given tables
+   *
+   * @param tables
+   */
+  protected void invalidate(final String... tables) {
+    final QueryCache cache = getQueryCache();
+    if (cache != null)
+      cache.invalidate(tables);
+  }
+
+  /**
+   * Run query reading the given tables, returning the cached result if it is
+   * still current
+   * <p>
+   * Writes to the tables must be run through
+   * {@link #run(Transaction, String...)}, submitted through
+   * {@link #submit(Transaction, String...)} or followed by a call to
+   * {@link #invalidate(String...)} for cached results to be refreshed
+   *
+   * @param sql
+   * @param args
+   * @param tables
+   *          tables read by the query
+   * @return cursor or null if the database could not be opened
+   */
+  protected Cursor query(final String sql, final String[] args,
+      final String... tables) {
+    final QueryCache cache = getQueryCache();
+    if (cache != null) {
+      final Cursor cached = cache.get(sql, args);
+      if (cached != null)
+        return cached;
+    }
+
+    final SQLiteDatabase database = getReadable();
+    if (database == null)
+      return null;
+    if (cache != null)
+      return cache.query(database, tables, sql, args);
+    return database.rawQuery(sql, args);
+  }
+
+  /**
+   * Write items with given {@link BulkInsert} committing a transaction for
+   * every chunk of rows
+   * <p>
+   * Rows of chunks committed before a failure remain written
+   *
+   * @param insert
+   * @param items
+   * @return number of rows written or -1 if the database could not be opened
+   */
+  protected <T> int run(final BulkInsert<T> insert,
+      final Iterable<? extends T> items) {
+    final SQLiteDatabase database = getWritable();
+    if (database == null)
+      return -1;
+
+    final Iterator<? extends T> iterator = items.iterator();
+    final int[] written = new int[1];
+    insert.compile(database);
+    try {
+      while (iterator.hasNext())
+        if (!run(new Transaction() {
+
+          public void perform(final SQLiteDatabase database) {
+            written[0] += insert.write(iterator);
+          }
+        }))
+          return -1;
+    } finally {
+      insert.close();
+      if (written[0] > 0)
+        invalidate(insert.getTable());
+    }
+    return written[0];
+  }
+
+  /**
+   * Get queue performing submitted transactions on a single writer thread
+   *
+   * @return transaction queue
+   */
+  protected synchronized TransactionQueue getTransactionQueue() {
+    if (queue == null)
+      queue = new TransactionQueue(this);
+    return queue;
+  }
+
+  /**
+   * Submit given {@link Transaction} to be committed on the writer thread of
+   * {@link #getTransactionQueue()} together with other transactions submitted
+   * around the same time
+   *
+   * @param transaction
+   * @return future completing with true if the transaction committed, false
+   *         if the database could not be opened
+   */
+  protected Future<Boolean> submit(final Transaction transaction) {
+    return getTransactionQueue().submit(transaction);
+  }
+
+  /**
+   * Submit given {@link Transaction} writing the given tables to the
+   * {@link #getTransactionQueue()} and invalidate cached query results
+   * reading the tables once it commits
+   *
+   * @param transaction
+   * @param tables
+   *          tables written by the transaction
+   * @return future completing with true if the transaction committed, false
+   *         if the database could not be opened
+   */
+  protected Future<Boolean> submit(final Transaction transaction,
+      final String... tables) {
+    return getTransactionQueue().submit(transaction, tables);
+  }
+
+  @Override
+  public void close() {
+    final TransactionQueue pending;
+    synchronized (this) {
+      pending = queue;
+      queue = null;
+    }
+    // Wait outside the lock since the writer thread opens the database
+    if (pending != null)
+      pending.shutdown().awaitTermination();
+    synchronized (this) {
+      if (statements != null)
+        statements.clear();
+      if (queries != null)
+        queries.clear();
+    }
+    super.close();
+  }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.os.AsyncTask;
+
+/**
+ * Task calculating the difference between two arrays of items on a
+ * background thread
+ */
+abstract class DiffTask extends AsyncTask<Void, Void, ItemDiff> {
+
+  /**
+   * Items being replaced
+   */
+  final Object[] oldItems;
+
+  /**
+   * Items replacing the old items
+   */
+  final Object[] newItems;
+
+  private final ItemDiff.Callback callback;
+
+  /**
+   * Create task
+   *
+   * @param oldItems
+   * @param newItems
+   * @param callback
+   */
+  DiffTask(final Object[] oldItems, final Object[] newItems,
+      final ItemDiff.Callback callback) {
+    this.oldItems = oldItems;
+    this.newItems = newItems;
+    this.callback = callback;
+  }
+
+  @Override
+  protected ItemDiff doInBackground(final Void... params) {
+    if (isCancelled())
+      return null;
+    return ItemDiff.calculate(oldItems, newItems, callback, true);
+  }
+
+  @Override
+  protected void onPostExecute(final ItemDiff diff) {
+    if (diff != null)
+      onDiffed(diff);
+  }
+
+  /**
+   * Difference was calculated, called on the main thread
+   *
+   * @param diff
+   */
+  protected abstract void onDiffed(ItemDiff diff);
+}
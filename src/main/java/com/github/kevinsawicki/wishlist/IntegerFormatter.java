@@ -0,0 +1,174 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Locale-aware formatter of integers with grouping that writes digits into
+ * caller-provided character arrays
+ * <p>
+ * Formatting into a reused array does not allocate. Instances are immutable
+ * apart from the array used by {@link #format(long)} and so should be confined
+ * to a single thread, see {@link #get()}.
+ */
+public class IntegerFormatter {
+
+  /**
+   * Maximum number of characters written when formatting a long
+   */
+  public static final int MAX_LENGTH = 40;
+
+  private static final ThreadLocal<IntegerFormatter> FORMATTERS = new ThreadLocal<IntegerFormatter>() {
+
+    @Override
+    protected IntegerFormatter initialValue() {
+      return new IntegerFormatter(Locale.getDefault());
+    }
+  };
+
+  /**
+   * Get formatter for the default locale confined to the current thread
+   * <p>
+   * This formatter may be used to pre-format numbers on background threads
+   *
+   * @return formatter
+   */
+  public static IntegerFormatter get() {
+    return FORMATTERS.get();
+  }
+
+  private final char zeroDigit;
+
+  private final char[] negativePrefix;
+
+  private final char[] negativeSuffix;
+
+  private final char groupingSeparator;
+
+  private final int groupingSize;
+
+  private final int secondaryGroupingSize;
+
+  private final char[] buffer = new char[MAX_LENGTH];
+
+  /**
+   * Create formatter using the grouping and digits of the given locale
+   *
+   * @param locale
+   */
+  public IntegerFormatter(final Locale locale) {
+    final NumberFormat format = NumberFormat.getIntegerInstance(locale);
+    final DecimalFormatSymbols symbols;
+    if (format instanceof DecimalFormat) {
+      final DecimalFormat decimal = (DecimalFormat) format;
+      symbols = decimal.getDecimalFormatSymbols();
+      groupingSize = decimal.isGroupingUsed() ? decimal.getGroupingSize() : 0;
+      secondaryGroupingSize = getSecondaryGroupingSize(decimal.toPattern(),
+          groupingSize);
+      negativePrefix = decimal.getNegativePrefix().toCharArray();
+      negativeSuffix = decimal.getNegativeSuffix().toCharArray();
+    } else {
+      symbols = new DecimalFormatSymbols(locale);
+      groupingSize = 3;
+      secondaryGroupingSize = 3;
+      negativePrefix = new char[] { symbols.getMinusSign() };
+      negativeSuffix = new char[0];
+    }
+
+    zeroDigit = symbols.getZeroDigit();
+    groupingSeparator = symbols.getGroupingSeparator();
+  }
+
+  /**
+   * Get size of the groups after the first group of a pattern such as
+   * <code>#,##,##0</code>, which Android applies to locales such as en_IN
+   *
+   * @param pattern
+   * @param groupingSize
+   * @return secondary grouping size
+   */
+  private static int getSecondaryGroupingSize(final String pattern,
+      final int groupingSize) {
+    int end = pattern.indexOf(';');
+    if (end == -1)
+      end = pattern.length();
+    final int decimal = pattern.lastIndexOf('.', end - 1);
+    if (decimal != -1)
+      end = decimal;
+    final int last = pattern.lastIndexOf(',', end - 1);
+    final int previous = last > 0 ? pattern.lastIndexOf(',', last - 1) : -1;
+    if (groupingSize == 0 || previous == -1 || last - previous - 1 < 1)
+      return groupingSize;
+    return last - previous - 1;
+  }
+
+  /**
+   * Format number into given array starting at index zero
+   *
+   * @param number
+   * @param buffer
+   *          array of at least {@link #MAX_LENGTH} characters
+   * @return number of characters written
+   */
+  public int format(final long number, final char[] buffer) {
+    // Accumulate as a negative value so Long.MIN_VALUE can be formatted
+    long value = number < 0 ? number : -number;
+    int digits = 1;
+    for (long remaining = value / 10; remaining != 0; remaining /= 10)
+      digits++;
+
+    int length = digits;
+    if (groupingSize > 0 && digits > groupingSize)
+      length += 1 + (digits - groupingSize - 1) / secondaryGroupingSize;
+    if (number < 0)
+      length += negativePrefix.length + negativeSuffix.length;
+
+    int index = length;
+    if (number < 0) {
+      index -= negativeSuffix.length;
+      System.arraycopy(negativeSuffix, 0, buffer, index, negativeSuffix.length);
+    }
+    int group = 0;
+    int size = groupingSize;
+    do {
+      if (group == size && size > 0) {
+        buffer[--index] = groupingSeparator;
+        group = 0;
+        size = secondaryGroupingSize;
+      }
+      buffer[--index] = (char) (zeroDigit - value % 10);
+      value /= 10;
+      group++;
+    } while (value != 0);
+    if (number < 0)
+      System.arraycopy(negativePrefix, 0, buffer, 0, negativePrefix.length);
+    return length;
+  }
+
+  /**
+   * Format number to a string
+   *
+   * @param number
+   * @return formatted number
+   */
+  public String format(final long number) {
+    return new String(buffer, 0, format(number, buffer));
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Array of items with stable ids shared by the single type adapters
+ * <p>
+ * Ids are assigned lazily and reassigned after the items change. Items can be
+ * replaced directly or after the difference from the current items is
+ * calculated on a background thread, a later replacement discards any
+ * difference still being calculated.
+ */
+class ItemArray {
+
+  /**
+   * Empty items
+   */
+  static final Object[] EMPTY = new Object[0];
+
+  /**
+   * Listener for differences calculated by
+   * {@link ItemArray#setDiffed(Object[], ItemDiff.Callback, DiffListener)}
+   */
+  interface DiffListener {
+
+    /**
+     * New items are in place
+     *
+     * @param diff
+     */
+    void onItemsDiffed(ItemDiff diff);
+  }
+
+  /**
+   * Get array of items in collection
+   *
+   * @param items
+   * @return array, empty if collection is null
+   */
+  static Object[] toArray(final Collection<?> items) {
+    return items != null && !items.isEmpty() ? items.toArray() : EMPTY;
+  }
+
+  private final StableIds stableIds = new StableIds();
+
+  private Object[] items = EMPTY;
+
+  private long[] ids;
+
+  private DiffTask diffTask;
+
+  /**
+   * @return items
+   */
+  Object[] get() {
+    return items;
+  }
+
+  /**
+   * @return list view of items
+   */
+  List<Object> asList() {
+    return Arrays.asList(items);
+  }
+
+  /**
+   * @return number of items
+   */
+  int size() {
+    return items.length;
+  }
+
+  /**
+   * @param position
+   * @return item at position
+   */
+  Object get(final int position) {
+    return items[position];
+  }
+
+  /**
+   * @param position
+   * @return stable id of item at position
+   */
+  long getId(final int position) {
+    if (ids == null)
+      ids = stableIds.assign(items);
+    return ids[position];
+  }
+
+  /**
+   * Replace items and discard any difference being calculated
+   *
+   * @param items
+   */
+  void set(final Object[] items) {
+    cancelDiff();
+    this.items = items != null ? items : EMPTY;
+    ids = null;
+  }
+
+  /**
+   * Set provider of item identities
+   *
+   * @param provider
+   * @return true if assigned ids were discarded, false otherwise
+   */
+  boolean setProvider(final ItemIdProvider provider) {
+    stableIds.setProvider(provider);
+    if (ids == null)
+      return false;
+
+    ids = null;
+    return true;
+  }
+
+  /**
+   * Replace items once their difference from the current items is
+   * calculated on a background thread
+   *
+   * @param items
+   * @param callback
+   * @param listener
+   */
+  void setDiffed(final Object[] items, final ItemDiff.Callback callback,
+      final DiffListener listener) {
+    cancelDiff();
+    diffTask = new DiffTask(this.items, items != null ? items : EMPTY,
+        callback) {
+
+      @Override
+      protected void onDiffed(final ItemDiff diff) {
+        if (diffTask != this)
+          return;
+
+        diffTask = null;
+        ItemArray.this.items = newItems;
+        ids = null;
+        listener.onItemsDiffed(diff);
+      }
+    };
+    AsyncTaskUtils.executeTask(diffTask);
+  }
+
+  /**
+   * Discard any difference being calculated
+   */
+  void cancelDiff() {
+    if (diffTask != null) {
+      diffTask.cancel(false);
+      diffTask = null;
+    }
+  }
+}
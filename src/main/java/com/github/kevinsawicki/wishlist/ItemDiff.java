@@ -0,0 +1,489 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.util.Arrays;
+
+/**
+ * Difference between two arrays of items expressed as an ordered list of
+ * insert, remove, move and change operations
+ * <p>
+ * Differences are calculated using Myers' O(ND) algorithm in linear space and
+ * so may be safely computed off the main thread. Dispatching the operations in
+ * order to an {@link UpdateListener} transforms the old array into the new
+ * array.
+ */
+public class ItemDiff {
+
+  /**
+   * Callback to compare old and new items
+   */
+  public static interface Callback {
+
+    /**
+     * Do the given items represent the same entity?
+     *
+     * @param oldItem
+     * @param newItem
+     * @return true if same, false otherwise
+     */
+    boolean areItemsTheSame(Object oldItem, Object newItem);
+
+    /**
+     * Do the given items, already known to represent the same entity, display
+     * the same content?
+     *
+     * @param oldItem
+     * @param newItem
+     * @return true if same, false otherwise
+     */
+    boolean areContentsTheSame(Object oldItem, Object newItem);
+  }
+
+  /**
+   * Listener notified of each operation of a difference
+   */
+  public static interface UpdateListener {
+
+    /**
+     * Items were inserted at position
+     *
+     * @param position
+     * @param count
+     */
+    void onInserted(int position, int count);
+
+    /**
+     * Items were removed at position
+     *
+     * @param position
+     * @param count
+     */
+    void onRemoved(int position, int count);
+
+    /**
+     * Item was moved from one position to another
+     *
+     * @param fromPosition
+     * @param toPosition
+     */
+    void onMoved(int fromPosition, int toPosition);
+
+    /**
+     * Items at position were changed
+     *
+     * @param position
+     * @param count
+     */
+    void onChanged(int position, int count);
+  }
+
+  /**
+   * Callback that compares items using {@link Object#equals(Object)}
+   * <p>
+   * Items that are equal are considered to have the same content and so this
+   * callback never produces change operations
+   */
+  public static final Callback EQUALS = new Callback() {
+
+    public boolean areItemsTheSame(final Object oldItem, final Object newItem) {
+      return oldItem == newItem || oldItem != null && oldItem.equals(newItem);
+    }
+
+    public boolean areContentsTheSame(final Object oldItem,
+        final Object newItem) {
+      return true;
+    }
+  };
+
+  private static final int INSERT = 1;
+
+  private static final int REMOVE = 2;
+
+  private static final int MOVE = 3;
+
+  private static final int CHANGE = 4;
+
+  /**
+   * Calculate the difference between the given arrays
+   *
+   * @param oldItems
+   * @param newItems
+   * @param callback
+   * @param detectMoves
+   *          true to report items present in both arrays but outside the
+   *          longest common subsequence as moves instead of a removal and an
+   *          insertion
+   * @return difference
+   */
+  public static ItemDiff calculate(final Object[] oldItems,
+      final Object[] newItems, final Callback callback,
+      final boolean detectMoves) {
+    final ItemDiff diff = new ItemDiff(oldItems.length, newItems.length);
+    new Calculator(oldItems, newItems, callback).calculate(diff, detectMoves);
+    return diff;
+  }
+
+  private final int oldCount;
+
+  private final int newCount;
+
+  private int[] ops = new int[12];
+
+  private int size;
+
+  private ItemDiff(final int oldCount, final int newCount) {
+    this.oldCount = oldCount;
+    this.newCount = newCount;
+  }
+
+  /**
+   * Get number of items before the difference is applied
+   *
+   * @return old count
+   */
+  public int getOldCount() {
+    return oldCount;
+  }
+
+  /**
+   * Get number of items after the difference is applied
+   *
+   * @return new count
+   */
+  public int getNewCount() {
+    return newCount;
+  }
+
+  /**
+   * Is this difference empty?
+   *
+   * @return true if the old and new items are the same, false otherwise
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Dispatch all operations in order to the given listener
+   *
+   * @param listener
+   * @return this difference
+   */
+  public ItemDiff dispatchUpdates(final UpdateListener listener) {
+    for (int i = 0; i < size; i += 3)
+      switch (ops[i]) {
+      case INSERT:
+        listener.onInserted(ops[i + 1], ops[i + 2]);
+        break;
+      case REMOVE:
+        listener.onRemoved(ops[i + 1], ops[i + 2]);
+        break;
+      case MOVE:
+        listener.onMoved(ops[i + 1], ops[i + 2]);
+        break;
+      case CHANGE:
+        listener.onChanged(ops[i + 1], ops[i + 2]);
+        break;
+      }
+    return this;
+  }
+
+  private void add(final int type, final int first, final int second) {
+    if (size > 0 && type != MOVE && ops[size - 3] == type) {
+      final int last = size - 3;
+      if (type == REMOVE) {
+        // Removals are added back to front
+        if (first + second == ops[last + 1]) {
+          ops[last + 1] = first;
+          ops[last + 2] += second;
+          return;
+        }
+      } else if (ops[last + 1] + ops[last + 2] == first) {
+        ops[last + 2] += second;
+        return;
+      }
+    }
+
+    if (size + 3 > ops.length)
+      ops = Arrays.copyOf(ops, ops.length * 2);
+    ops[size++] = type;
+    ops[size++] = first;
+    ops[size++] = second;
+  }
+
+  /**
+   * Myers' difference algorithm using the linear space middle snake
+   * refinement, followed by move detection and operation generation
+   */
+  private static class Calculator {
+
+    private final Object[] oldItems;
+
+    private final Object[] newItems;
+
+    private final Callback callback;
+
+    private final int[] oldToNew;
+
+    private final int[] newToOld;
+
+    private final int[] forward;
+
+    private final int[] backward;
+
+    private final int offset;
+
+    private int snakeStartX;
+
+    private int snakeStartY;
+
+    private int snakeEndX;
+
+    private int snakeEndY;
+
+    private Calculator(final Object[] oldItems, final Object[] newItems,
+        final Callback callback) {
+      this.oldItems = oldItems;
+      this.newItems = newItems;
+      this.callback = callback;
+
+      oldToNew = new int[oldItems.length];
+      Arrays.fill(oldToNew, -1);
+      newToOld = new int[newItems.length];
+      Arrays.fill(newToOld, -1);
+
+      final int max = (oldItems.length + newItems.length + 1) / 2;
+      offset = max + 1;
+      forward = new int[2 * max + 3];
+      backward = new int[2 * max + 3];
+    }
+
+    private boolean same(final int oldIndex, final int newIndex) {
+      return callback.areItemsTheSame(oldItems[oldIndex], newItems[newIndex]);
+    }
+
+    private void match(final int oldIndex, final int newIndex) {
+      oldToNew[oldIndex] = newIndex;
+      newToOld[newIndex] = oldIndex;
+    }
+
+    private void calculate(final ItemDiff diff, final boolean detectMoves) {
+      if (oldItems.length > 0 && newItems.length > 0)
+        findCommon(0, oldItems.length, 0, newItems.length);
+
+      final boolean[] moved = new boolean[newItems.length];
+      if (detectMoves)
+        findMoves(moved);
+
+      generate(diff, moved);
+    }
+
+    /**
+     * Find the longest common subsequence of the given ranges
+     */
+    private void findCommon(int oldStart, int oldEnd, int newStart, int newEnd) {
+      while (oldStart < oldEnd && newStart < newEnd
+          && same(oldStart, newStart))
+        match(oldStart++, newStart++);
+      while (oldStart < oldEnd && newStart < newEnd
+          && same(oldEnd - 1, newEnd - 1))
+        match(--oldEnd, --newEnd);
+      if (oldStart == oldEnd || newStart == newEnd)
+        return;
+
+      findMiddleSnake(oldStart, oldEnd, newStart, newEnd);
+      final int startX = oldStart + snakeStartX;
+      final int startY = newStart + snakeStartY;
+      final int endX = oldStart + snakeEndX;
+      final int endY = newStart + snakeEndY;
+
+      findCommon(oldStart, startX, newStart, startY);
+      for (int x = startX, y = startY; x < endX; x++, y++)
+        match(x, y);
+      findCommon(endX, oldEnd, endY, newEnd);
+    }
+
+    private void findMiddleSnake(final int oldStart, final int oldEnd,
+        final int newStart, final int newEnd) {
+      final int n = oldEnd - oldStart;
+      final int m = newEnd - newStart;
+      final int delta = n - m;
+      final boolean odd = (delta & 1) != 0;
+      final int max = (n + m + 1) / 2;
+      final int[] forward = this.forward;
+      final int[] backward = this.backward;
+      final int offset = this.offset;
+
+      forward[offset + 1] = 0;
+      backward[offset + 1] = 0;
+      for (int d = 0; d <= max; d++) {
+        for (int k = -d; k <= d; k += 2) {
+          int x;
+          if (k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1])
+            x = forward[offset + k + 1];
+          else
+            x = forward[offset + k - 1] + 1;
+          int y = x - k;
+          final int startX = x;
+          final int startY = y;
+          while (x < n && y < m && same(oldStart + x, newStart + y)) {
+            x++;
+            y++;
+          }
+          forward[offset + k] = x;
+
+          final int reverse = delta - k;
+          if (odd && reverse >= 1 - d && reverse <= d - 1
+              && x + backward[offset + reverse] >= n) {
+            snakeStartX = startX;
+            snakeStartY = startY;
+            snakeEndX = x;
+            snakeEndY = y;
+            return;
+          }
+        }
+
+        for (int k = -d; k <= d; k += 2) {
+          int x;
+          if (k == -d || k != d && backward[offset + k - 1] < backward[offset + k + 1])
+            x = backward[offset + k + 1];
+          else
+            x = backward[offset + k - 1] + 1;
+          int y = x - k;
+          final int startX = x;
+          final int startY = y;
+          while (x < n && y < m
+              && same(oldEnd - x - 1, newEnd - y - 1)) {
+            x++;
+            y++;
+          }
+          backward[offset + k] = x;
+
+          final int reverse = delta - k;
+          if (!odd && reverse >= -d && reverse <= d
+              && x + forward[offset + reverse] >= n) {
+            snakeStartX = n - x;
+            snakeStartY = m - y;
+            snakeEndX = n - startX;
+            snakeEndY = m - startY;
+            return;
+          }
+        }
+      }
+      throw new IllegalStateException("No middle snake found");
+    }
+
+    /**
+     * Pair unmatched old and new items that represent the same entity
+     */
+    private void findMoves(final boolean[] moved) {
+      final int[] removed = new int[oldItems.length];
+      int removedCount = 0;
+      for (int i = 0; i < oldItems.length; i++)
+        if (oldToNew[i] == -1)
+          removed[removedCount++] = i;
+      if (removedCount == 0)
+        return;
+
+      for (int j = 0; j < newItems.length && removedCount > 0; j++) {
+        if (newToOld[j] != -1)
+          continue;
+        for (int r = 0; r < removedCount; r++)
+          if (same(removed[r], j)) {
+            match(removed[r], j);
+            moved[j] = true;
+            System.arraycopy(removed, r + 1, removed, r, removedCount - r
+                - 1);
+            removedCount--;
+            break;
+          }
+      }
+    }
+
+    /**
+     * Generate operations by laying out every old and new item in a single
+     * merged order of slots and tracking occupied slots in a Fenwick tree so
+     * the current position of any slot can be found in O(log n)
+     */
+    private void generate(final ItemDiff diff, final boolean[] moved) {
+      final int oldLength = oldItems.length;
+      final int newLength = newItems.length;
+      final int[] oldSlots = new int[oldLength];
+      final int[] newSlots = new int[newLength];
+
+      int slot = 0;
+      int i = 0;
+      int j = 0;
+      while (i < oldLength || j < newLength) {
+        while (i < oldLength && (oldToNew[i] == -1 || moved[oldToNew[i]]))
+          oldSlots[i++] = slot++;
+        while (j < newLength && (newToOld[j] == -1 || moved[j]))
+          newSlots[j++] = slot++;
+        if (i < oldLength && j < newLength) {
+          // Common item occupies a single slot in both arrays
+          oldSlots[i++] = slot;
+          newSlots[j++] = slot++;
+        }
+      }
+
+      final int[] tree = new int[slot + 1];
+      for (i = 0; i < oldLength; i++)
+        add(tree, oldSlots[i], 1);
+
+      for (i = oldLength - 1; i >= 0; i--)
+        if (oldToNew[i] == -1) {
+          diff.add(REMOVE, count(tree, oldSlots[i]), 1);
+          add(tree, oldSlots[i], -1);
+        }
+
+      for (j = 0; j < newLength; j++) {
+        final int oldIndex = newToOld[j];
+        if (oldIndex == -1) {
+          add(tree, newSlots[j], 1);
+          diff.add(INSERT, count(tree, newSlots[j]), 1);
+          continue;
+        }
+
+        if (moved[j]) {
+          final int from = count(tree, oldSlots[oldIndex]);
+          add(tree, oldSlots[oldIndex], -1);
+          add(tree, newSlots[j], 1);
+          final int to = count(tree, newSlots[j]);
+          if (from != to)
+            diff.add(MOVE, from, to);
+        }
+        if (!callback.areContentsTheSame(oldItems[oldIndex], newItems[j]))
+          diff.add(CHANGE, count(tree, newSlots[j]), 1);
+      }
+    }
+
+    private static void add(final int[] tree, final int slot, final int delta) {
+      for (int i = slot + 1; i < tree.length; i += i & -i)
+        tree[i] += delta;
+    }
+
+    /**
+     * Count occupied slots before the given slot
+     */
+    private static int count(final int[] tree, final int slot) {
+      int count = 0;
+      for (int i = slot; i > 0; i -= i & -i)
+        count += tree[i];
+      return count;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.widget.Filter;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filter of items whose search key contains the query
+ * <p>
+ * Filtering runs on the filter's background thread and matching items are
+ * published to the adapter through {@link SingleTypeAdapter#setItems(Object[])}
+ * , an empty query publishes all items. Adapters create their filter with
+ * {@link SingleTypeAdapter#createFilter()} and keep the items it filters
+ * up to date with the items set on the adapter.
+ * <p>
+ * The matches of the previous query are reused when the next query extends
+ * it. Lists with at least {@link #INDEX_THRESHOLD} items are also indexed
+ * once by the trigrams of their search keys so queries of three or more
+ * characters only check the items containing the query's rarest trigram.
+ * <p>
+ * Every query supersedes earlier queries. Filtering still running for an
+ * earlier query stops once a later query starts and results of earlier
+ * queries are not published after those of a later query. Queries started
+ * with {@link #search(CharSequence)} also stop earlier filtering before the
+ * filter thread picks them up.
+ */
+public class ItemFilter extends Filter {
+
+  /**
+   * Minimum number of items that are indexed by trigram
+   */
+  public static final int INDEX_THRESHOLD = 1000;
+
+  private static final int CHECK_INTERVAL = 256;
+
+  private static final Object[] EMPTY = new Object[0];
+
+  /**
+   * Sorted positions of items
+   */
+  private static class Positions {
+
+    int[] positions = new int[4];
+
+    int size;
+
+    void add(final int position) {
+      if (size == positions.length)
+        positions = Arrays.copyOf(positions, size * 2);
+      positions[size++] = position;
+    }
+  }
+
+  /**
+   * Items being filtered with their lazily built keys and index, only
+   * accessed on the filter thread after creation
+   */
+  private static class Source {
+
+    final Object[] items;
+
+    String[] keys;
+
+    Map<Long, Positions> index;
+
+    String lastQuery;
+
+    int[] lastMatches;
+
+    int lastMatchCount;
+
+    Source(final Object[] items) {
+      this.items = items;
+    }
+  }
+
+  /**
+   * Filtered items tagged with the generation of the query that matched them
+   */
+  private static class Matches {
+
+    final Object[] items;
+
+    final int generation;
+
+    Matches(final Object[] items, final int generation) {
+      this.items = items;
+      this.generation = generation;
+    }
+  }
+
+  private final SingleTypeAdapter<?> adapter;
+
+  private volatile Source source = new Source(EMPTY);
+
+  private final AtomicInteger generation = new AtomicInteger();
+
+  /**
+   * Create filter publishing to adapter
+   *
+   * @param adapter
+   */
+  public ItemFilter(final SingleTypeAdapter<?> adapter) {
+    this.adapter = adapter;
+  }
+
+  /**
+   * Set all items to filter
+   * <p>
+   * The given array must not be modified after calling this method
+   *
+   * @param items
+   * @return this filter
+   */
+  public ItemFilter setItems(final Object[] items) {
+    source = new Source(items != null ? items : EMPTY);
+    return this;
+  }
+
+  /**
+   * Set all items to filter
+   *
+   * @param items
+   * @return this filter
+   */
+  public ItemFilter setItems(final Collection<?> items) {
+    return setItems(items != null ? items.toArray() : EMPTY);
+  }
+
+  /**
+   * Filter items with query and cancel filtering of earlier queries
+   *
+   * @param query
+   */
+  public void search(final CharSequence query) {
+    generation.incrementAndGet();
+    filter(query);
+  }
+
+  /**
+   * Get key that queries are matched against
+   * <p>
+   * The default behavior is to use the item's {@link #toString()} method.
+   * This method is called on the filter thread once per item.
+   *
+   * @param item
+   * @return search key
+   */
+  protected String getSearchKey(final Object item) {
+    return item.toString();
+  }
+
+  /**
+   * Normalize key or query before matching
+   *
+   * @param text
+   * @return normalized text
+   */
+  protected String normalize(final String text) {
+    return text.toLowerCase(Locale.getDefault());
+  }
+
+  private static long trigram(final String text, final int start) {
+    return (long) text.charAt(start) << 32 | (long) text.charAt(start + 1) << 16
+        | text.charAt(start + 2);
+  }
+
+  private void buildKeys(final Source source) {
+    final Object[] items = source.items;
+    final String[] keys = new String[items.length];
+    for (int i = 0; i < items.length; i++) {
+      final String key = items[i] != null ? getSearchKey(items[i]) : null;
+      keys[i] = key != null ? normalize(key) : "";
+    }
+    source.keys = keys;
+
+    if (items.length < INDEX_THRESHOLD)
+      return;
+
+    final Map<Long, Positions> index = new HashMap<Long, Positions>();
+    for (int i = 0; i < keys.length; i++) {
+      final String key = keys[i];
+      for (int start = 0; start + 3 <= key.length(); start++) {
+        final Long trigram = trigram(key, start);
+        Positions positions = index.get(trigram);
+        if (positions == null) {
+          positions = new Positions();
+          index.put(trigram, positions);
+        }
+        // Positions are visited in order so a repeated trigram is the last
+        if (positions.size == 0
+            || positions.positions[positions.size - 1] != i)
+          positions.add(i);
+      }
+    }
+    source.index = index;
+  }
+
+  @Override
+  protected FilterResults performFiltering(final CharSequence constraint) {
+    // Runs of every entry point supersede the runs started before them
+    final int started = generation.incrementAndGet();
+    final Source source = this.source;
+    final FilterResults results = new FilterResults();
+    if (constraint == null || constraint.length() == 0) {
+      source.lastQuery = null;
+      results.values = new Matches(source.items, started);
+      results.count = source.items.length;
+      return results;
+    }
+
+    if (source.keys == null)
+      buildKeys(source);
+    final String query = normalize(constraint.toString());
+
+    // Choose the smallest set of candidates known to contain all matches
+    int[] candidates = null;
+    int candidateCount = source.items.length;
+    if (source.lastQuery != null && query.startsWith(source.lastQuery)) {
+      candidates = source.lastMatches;
+      candidateCount = source.lastMatchCount;
+    }
+    if (source.index != null)
+      for (int start = 0; start + 3 <= query.length(); start++) {
+        final Positions positions = source.index.get(trigram(query, start));
+        final int size = positions != null ? positions.size : 0;
+        if (size < candidateCount) {
+          candidates = positions != null ? positions.positions : null;
+          candidateCount = size;
+        }
+      }
+
+    final String[] keys = source.keys;
+    final int[] matches = new int[candidateCount];
+    int matchCount = 0;
+    for (int i = 0; i < candidateCount; i++) {
+      if (i % CHECK_INTERVAL == 0 && started != generation.get())
+        return results;
+      final int position = candidates != null ? candidates[i] : i;
+      if (keys[position].contains(query))
+        matches[matchCount++] = position;
+    }
+
+    source.lastQuery = query;
+    source.lastMatches = matches;
+    source.lastMatchCount = matchCount;
+
+    final Object[] filtered = new Object[matchCount];
+    for (int i = 0; i < matchCount; i++)
+      filtered[i] = source.items[matches[i]];
+    results.values = new Matches(filtered, started);
+    results.count = matchCount;
+    return results;
+  }
+
+  @Override
+  protected void publishResults(final CharSequence constraint,
+      final FilterResults results) {
+    final Matches matches = (Matches) results.values;
+    if (matches != null && matches.generation == generation.get())
+      adapter.setFilteredItems(matches.items);
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+/**
+ * Provider of the identity used to assign stable ids to adapter items
+ */
+public interface ItemIdProvider {
+
+  /**
+   * Get identity of item
+   * <p>
+   * Items with equal identities, as defined by {@link Object#equals(Object)}
+   * and {@link Object#hashCode()}, keep the same id when items are replaced.
+   * A database row would typically return its primary key here.
+   *
+   * @param item
+   * @return identity, may be null
+   */
+  Object getIdentity(Object item);
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.text.TextUtils;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Section finder that groups Japanese readings by gojūon row and Latin text by
+ * initial letter
+ * <p>
+ * Sections are the rows あ, か, さ, た, な, は, ま, や, ら and わ, the letters A
+ * to Z and {@link #OTHER} for everything else. Hiragana, full and half-width
+ * katakana and full-width letters are normalized before grouping, voiced and
+ * small kana belong to the row of their base kana.
+ * <p>
+ * Kanji cannot be grouped from the text alone so sub-classes displaying kanji
+ * should override {@link #getReading(Object)} to return the kana reading.
+ */
+public class KanaSectionFinder extends SectionFinder {
+
+  /**
+   * Section of readings that do not start with kana or a Latin letter
+   */
+  public static final String OTHER = "#";
+
+  private static final String[] ROWS = { "あ", "か", "さ", "た", "な", "は", "ま",
+      "や", "ら", "わ" };
+
+  /**
+   * First hiragana of each row in {@link #ROWS}
+   */
+  private static final char[] ROW_STARTS = { 'ぁ', 'か', 'さ', 'た', 'な', 'は',
+      'ま', 'ゃ', 'ら', 'ゎ' };
+
+  private static final String[] LETTERS = new String[26];
+
+  static {
+    for (int i = 0; i < LETTERS.length; i++)
+      LETTERS[i] = String.valueOf((char) ('A' + i));
+  }
+
+  private static class Keyed {
+
+    final Object item;
+
+    final CollationKey key;
+
+    Keyed(final Object item, final CollationKey key) {
+      this.item = item;
+      this.key = key;
+    }
+  }
+
+  private static final Comparator<Keyed> KEY_ORDER = new Comparator<Keyed>() {
+
+    public int compare(final Keyed lhs, final Keyed rhs) {
+      return lhs.key.compareTo(rhs.key);
+    }
+  };
+
+  /**
+   * Get reading of item used for sorting and grouping
+   * <p>
+   * The default behavior is to use the item's {@link #toString()} method
+   *
+   * @param item
+   * @return reading
+   */
+  protected String getReading(final Object item) {
+    return item.toString();
+  }
+
+  @Override
+  protected Object getSection(final Object item) {
+    return getSection(getReading(item));
+  }
+
+  /**
+   * Get section of reading
+   *
+   * @param reading
+   * @return section
+   */
+  public static String getSection(final String reading) {
+    if (TextUtils.isEmpty(reading))
+      return OTHER;
+
+    char initial = reading.charAt(0);
+    if (initial >= 'ｦ' && initial <= 'ﾝ' || initial >= 'Ａ' && initial <= 'ｚ') {
+      final String normalized = Normalizer.normalize(
+          reading.substring(0, 1), Normalizer.Form.NFKC);
+      if (normalized.length() > 0)
+        initial = normalized.charAt(0);
+    }
+
+    if (initial >= 'a' && initial <= 'z')
+      return LETTERS[initial - 'a'];
+    if (initial >= 'A' && initial <= 'Z')
+      return LETTERS[initial - 'A'];
+
+    // Katakana map to hiragana by a fixed offset
+    if (initial >= 'ァ' && initial <= 'ヶ')
+      initial -= 'ァ' - 'ぁ';
+    else if (initial >= 'ヷ' && initial <= 'ヺ')
+      return ROWS[9];
+
+    switch (initial) {
+    case 'ゔ':
+      return ROWS[0];
+    case 'ゕ':
+    case 'ゖ':
+      return ROWS[1];
+    }
+    if (initial < 'ぁ' || initial > 'ん')
+      return OTHER;
+
+    int row = ROW_STARTS.length - 1;
+    while (initial < ROW_STARTS[row])
+      row--;
+    return ROWS[row];
+  }
+
+  /**
+   * Sort items by the Japanese collation of their readings
+   * <p>
+   * A collation key is computed once per item rather than on every
+   * comparison. This method may be called on a background thread, the given
+   * array is not modified.
+   *
+   * @param items
+   * @return sorted copy of items
+   */
+  public Object[] sort(final Object[] items) {
+    final Collator collator = Collator.getInstance(Locale.JAPANESE);
+    final Keyed[] keyed = new Keyed[items.length];
+    for (int i = 0; i < items.length; i++) {
+      final String reading = getReading(items[i]);
+      keyed[i] = new Keyed(items[i], collator.getCollationKey(Normalizer
+          .normalize(reading, Normalizer.Form.NFKC)));
+    }
+    Arrays.sort(keyed, KEY_ORDER);
+
+    final Object[] sorted = new Object[items.length];
+    for (int i = 0; i < keyed.length; i++)
+      sorted[i] = keyed[i].item;
+    return sorted;
+  }
+}
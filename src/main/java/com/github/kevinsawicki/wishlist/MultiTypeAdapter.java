@@ -17,43 +17,43 @@ package com.github.kevinsawicki.wishlist;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue.IdleHandler;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
 
 /**
  * Adapter for lists where only multiple view types are needed
  */
 public abstract class MultiTypeAdapter extends TypeAdapter {
 
-  private static class Item {
+  private final LayoutInflater inflater;
 
-    public final int type;
+  private final int[] layout;
 
-    public final Object item;
+  private final int[][] children;
 
-    private Item(final int type, final Object item) {
-      this.type = type;
-      this.item = item;
-    }
+  private final TypedItems items = new TypedItems();
 
-    @Override
-    public int hashCode() {
-      return item.hashCode();
-    }
-  }
+  private int batchDepth;
 
-  private final LayoutInflater inflater;
+  private boolean batchChanged;
 
-  private final int[] layout;
+  private int savedNotifications;
 
-  private final int[][] children;
+  private ItemDiff.UpdateListener updateListener;
+
+  private View[][] pool;
 
-  private final List<Item> items = new ArrayList<Item>();
+  private int[] pooled;
+
+  private int[] pending;
+
+  private IdleHandler prewarmer;
 
   /**
    * Create adapter
@@ -94,15 +94,209 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
     }
   }
 
+  /**
+   * Inflate and initialize rows of the given type while the main thread is
+   * idle until the given number of rows is pooled
+   * <p>
+   * One row is inflated each time the main thread's message queue becomes
+   * idle. {@link #getView(int, View, ViewGroup)} takes pooled rows before
+   * inflating new ones. This method must be called on the main thread.
+   * 
+   * @param type
+   * @param count
+   * @return this adapter
+   */
+  public MultiTypeAdapter prewarm(final int type, final int count) {
+    if (pool == null) {
+      pool = new View[layout.length][];
+      pooled = new int[layout.length];
+      pending = new int[layout.length];
+    }
+
+    pending[type] = Math.max(0, count - pooled[type]);
+    if (pending[type] == 0)
+      return this;
+
+    if (pool[type] == null || pool[type].length < count)
+      pool[type] = pool[type] == null ? new View[count] : Arrays.copyOf(
+          pool[type], count);
+    if (prewarmer == null) {
+      prewarmer = new Prewarmer();
+      Looper.myQueue().addIdleHandler(prewarmer);
+    }
+    return this;
+  }
+
+  /**
+   * Inflate and initialize rows of every type while the main thread is idle
+   * until the given number of rows of each type is pooled
+   * 
+   * @param count
+   * @return this adapter
+   */
+  public MultiTypeAdapter prewarm(final int count) {
+    for (int type = 0; type < layout.length; type++)
+      prewarm(type, count);
+    return this;
+  }
+
+  /**
+   * Get number of rows of the given type that are pooled
+   * 
+   * @param type
+   * @return pooled row count
+   */
+  public int getPooledCount(final int type) {
+    return pooled != null ? pooled[type] : 0;
+  }
+
+  /**
+   * Discard all pooled rows and stop inflating rows
+   * 
+   * @return this adapter
+   */
+  public MultiTypeAdapter clearPool() {
+    if (prewarmer != null) {
+      Looper.myQueue().removeIdleHandler(prewarmer);
+      prewarmer = null;
+    }
+    pool = null;
+    pooled = null;
+    pending = null;
+    return this;
+  }
+
+  private class Prewarmer implements IdleHandler {
+
+    public boolean queueIdle() {
+      if (prewarmer != this)
+        return false;
+
+      for (int type = 0; type < pending.length; type++)
+        if (pending[type] > 0) {
+          pending[type]--;
+          pool[type][pooled[type]++] = initialize(type,
+              inflater.inflate(layout[type], null));
+          return true;
+        }
+
+      prewarmer = null;
+      return false;
+    }
+  }
+
+  private View takePooled(final int type) {
+    if (pool == null || pooled[type] == 0)
+      return null;
+
+    final View view = pool[type][--pooled[type]];
+    pool[type][pooled[type]] = null;
+    return view;
+  }
+
+  /**
+   * Begin a batch of changes
+   * <p>
+   * Change notifications are deferred until the matching call to
+   * {@link #endBatch()} at which point a single notification is sent if any
+   * changes were made. Batches may be nested.
+   * 
+   * @return this adapter
+   */
+  public MultiTypeAdapter beginBatch() {
+    batchDepth++;
+    return this;
+  }
+
+  /**
+   * End a batch of changes started with {@link #beginBatch()}
+   * 
+   * @return this adapter
+   */
+  public MultiTypeAdapter endBatch() {
+    if (batchDepth == 0)
+      throw new IllegalStateException("No batch in progress");
+
+    batchDepth--;
+    if (batchDepth == 0 && batchChanged) {
+      batchChanged = false;
+      notifyDataSetChanged();
+    }
+    return this;
+  }
+
+  /**
+   * Is a batch of changes in progress?
+   * 
+   * @return true if in batch, false otherwise
+   */
+  public boolean isInBatch() {
+    return batchDepth > 0;
+  }
+
+  /**
+   * Get number of change notifications that were coalesced into an earlier
+   * notification of the same batch
+   * 
+   * @return saved notification count
+   */
+  public int getSavedNotificationCount() {
+    return savedNotifications;
+  }
+
+  /**
+   * Notify that the data set changed unless a batch is in progress
+   */
+  protected void notifyChanged() {
+    if (batchDepth == 0)
+      notifyDataSetChanged();
+    else if (batchChanged)
+      savedNotifications++;
+    else
+      batchChanged = true;
+  }
+
+  /**
+   * Set listener to receive the positions affected by each change
+   * <p>
+   * List views can only be notified that the whole data set changed, this
+   * listener receives the ranges of each insertion, removal and move for uses
+   * such as animating the affected rows
+   * 
+   * @param listener
+   * @return this adapter
+   */
+  public MultiTypeAdapter setUpdateListener(
+      final ItemDiff.UpdateListener listener) {
+    updateListener = listener;
+    return this;
+  }
+
   /**
    * Clear all items
    * 
    * @return this adapter
    */
   public MultiTypeAdapter clear() {
+    final int count = items.size();
     items.clear();
 
-    notifyDataSetChanged();
+    if (updateListener != null && count > 0)
+      updateListener.onRemoved(0, count);
+    notifyChanged();
+    return this;
+  }
+
+  /**
+   * Set provider of the identities used to assign stable item ids
+   * <p>
+   * The provider only applies to items added after this method is called
+   * 
+   * @param provider
+   * @return this adapter
+   */
+  public MultiTypeAdapter setItemIdProvider(final ItemIdProvider provider) {
+    items.setProvider(provider);
     return this;
   }
 
@@ -114,9 +308,29 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
    * @return this adapter
    */
   public MultiTypeAdapter addItem(final int type, final Object item) {
-    items.add(new Item(type, item));
+    items.add(type, item);
+
+    if (updateListener != null)
+      updateListener.onInserted(items.size() - 1, 1);
+    notifyChanged();
+    return this;
+  }
+
+  /**
+   * Insert item at position registered as the given type
+   * 
+   * @param position
+   * @param type
+   * @param item
+   * @return this adapter
+   */
+  public MultiTypeAdapter insertItem(final int position, final int type,
+      final Object item) {
+    items.insert(position, type, item);
 
-    notifyDataSetChanged();
+    if (updateListener != null)
+      updateListener.onInserted(position, 1);
+    notifyChanged();
     return this;
   }
 
@@ -128,13 +342,16 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
    * @return this adapter
    */
   public MultiTypeAdapter addItems(final int type, final Object[] items) {
-    if (items == null || items.length == 0)
-      return this;
+    return onAdded(this.items.addAll(type, items));
+  }
 
-    for (Object item : items)
-      this.items.add(new Item(type, item));
+  private MultiTypeAdapter onAdded(final int count) {
+    if (count == 0)
+      return this;
 
-    notifyDataSetChanged();
+    if (updateListener != null)
+      updateListener.onInserted(items.size() - count, count);
+    notifyChanged();
     return this;
   }
 
@@ -146,14 +363,7 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
    * @return this adapter
    */
   public MultiTypeAdapter addItems(final int type, final Collection<?> items) {
-    if (items == null || items.isEmpty())
-      return this;
-
-    for (Object item : items)
-      this.items.add(new Item(type, item));
-
-    notifyDataSetChanged();
-    return this;
+    return onAdded(this.items.addAll(type, items));
   }
 
   /**
@@ -163,9 +373,30 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
    * @return this adapter
    */
   public MultiTypeAdapter removeItem(final int position) {
-    if (position > 0 && position < items.size()
-        && items.remove(position) != null)
-      notifyDataSetChanged();
+    if (items.remove(position)) {
+      if (updateListener != null)
+        updateListener.onRemoved(position, 1);
+      notifyChanged();
+    }
+    return this;
+  }
+
+  /**
+   * Move item to a new position keeping its id
+   * <p>
+   * Positions outside of the items are ignored
+   * 
+   * @param fromPosition
+   * @param toPosition
+   * @return this adapter
+   */
+  public MultiTypeAdapter moveItem(final int fromPosition,
+      final int toPosition) {
+    if (items.move(fromPosition, toPosition)) {
+      if (updateListener != null)
+        updateListener.onMoved(fromPosition, toPosition);
+      notifyChanged();
+    }
     return this;
   }
 
@@ -195,17 +426,32 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
 
   @Override
   public Object getItem(final int position) {
-    return items.get(position).item;
+    return items.getItem(position);
   }
 
   @Override
   public long getItemId(final int position) {
-    return items.get(position).hashCode();
+    return items.getId(position);
+  }
+
+  /**
+   * Item ids are always stable
+   * <p>
+   * Each item keeps its id for as long as it is displayed, using the identity
+   * from the {@link ItemIdProvider} when one is set and the item itself
+   * otherwise. Ids used to be {@link Object#hashCode()} of the item and were
+   * not reported as stable; repeated items now get distinct ids.
+   *
+   * @return true
+   */
+  @Override
+  public boolean hasStableIds() {
+    return true;
   }
 
   @Override
   public int getItemViewType(final int position) {
-    return items.get(position).type;
+    return items.getType(position);
   }
 
   /**
@@ -220,6 +466,28 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
       final int type) {
     setCurrentView(view);
     update(position, item, type);
+    deferUpdate(position, view);
+  }
+
+  @Override
+  protected void updateDeferred(final int position, final View view) {
+    setCurrentView(view);
+    updateDeferred(position, getItem(position), getItemViewType(position));
+  }
+
+  /**
+   * Run the expensive part of updating an item such as loading images
+   * <p>
+   * This method is called after {@link #update(int, Object, int)} unless the
+   * list is flinging in which case it is called once the list stops if the
+   * row is still visible. The default behavior is to do nothing.
+   * 
+   * @param position
+   * @param item
+   * @param type
+   */
+  protected void updateDeferred(int position, Object item, int type) {
+    // Intentionally left blank
   }
 
   /**
@@ -248,9 +516,19 @@ public abstract class MultiTypeAdapter extends TypeAdapter {
   public View getView(final int position, View convertView,
       final ViewGroup parent) {
     int type = getItemViewType(position);
+    final AdapterMetrics metrics = getMetrics();
     if (convertView == null)
+      convertView = takePooled(type);
+    if (convertView == null) {
+      final long start = metrics != null ? metrics.beginInflate(type) : 0;
       convertView = initialize(type, inflater.inflate(layout[type], null));
+      if (metrics != null)
+        metrics.endInflate(type, start);
+    }
+    final long start = metrics != null ? metrics.beginBind(type) : 0;
     update(position, convertView, getItem(position), type);
+    if (metrics != null)
+      metrics.endBind(type, start);
     return convertView;
   }
 }
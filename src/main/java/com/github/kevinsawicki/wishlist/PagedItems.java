@@ -0,0 +1,355 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Fixed size list of items loaded in pages on demand
+ * <p>
+ * Requesting an item loads its page and the pages within the prefetch
+ * distance on a background executor. Items of pages that are not loaded yet
+ * are returned as null placeholders. Once more than the maximum number of
+ * pages are resident the pages farthest from the most recently requested page
+ * are evicted, so memory use depends on the page size and not the number of
+ * items.
+ * <p>
+ * This class must only be used from the main thread, only the loader is
+ * called on the executor.
+ */
+public class PagedItems {
+
+  /**
+   * Loader of pages of items
+   */
+  public interface Loader {
+
+    /**
+     * Load items
+     * <p>
+     * This method is called on a background thread
+     *
+     * @param offset
+     * @param count
+     * @return items, may contain fewer than the requested count
+     */
+    Object[] load(int offset, int count);
+
+    /**
+     * Get stable id of a loaded item
+     * <p>
+     * This method is called on the main thread and must return a
+     * non-negative id that stays the same while the item is displayed, for
+     * example its database row id
+     *
+     * @param item
+     * @return id
+     */
+    long getItemId(Object item);
+  }
+
+  /**
+   * Listener for pages being loaded
+   */
+  public interface Listener {
+
+    /**
+     * Page of items was loaded and replaced its placeholders
+     *
+     * @param items
+     * @param offset
+     * @param count
+     */
+    void onPageLoaded(PagedItems items, int offset, int count);
+  }
+
+  private static Executor defaultExecutor;
+
+  private static synchronized Executor getDefaultExecutor() {
+    if (defaultExecutor == null)
+      defaultExecutor = Executors.newSingleThreadExecutor();
+    return defaultExecutor;
+  }
+
+  private final int count;
+
+  private final Loader loader;
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+
+  private Executor executor;
+
+  private Listener listener;
+
+  private int pageSize = 50;
+
+  private int prefetchDistance = 1;
+
+  private int maxPages = 8;
+
+  private Object[][] pages;
+
+  private boolean[] loading;
+
+  private int residentPages;
+
+  private int lastPage;
+
+  private int generation;
+
+  /**
+   * Create paged items
+   *
+   * @param count
+   *          total number of items
+   * @param loader
+   */
+  public PagedItems(final int count, final Loader loader) {
+    this.count = Math.max(0, count);
+    this.loader = loader;
+  }
+
+  /**
+   * Set number of items loaded together
+   * <p>
+   * Pages should hold more items than are visible at once. Changing the page
+   * size discards all loaded pages.
+   *
+   * @param pageSize
+   * @return this list
+   */
+  public PagedItems setPageSize(final int pageSize) {
+    if (pageSize < 1)
+      throw new IllegalArgumentException("Page size must be positive");
+    if (pageSize != this.pageSize) {
+      this.pageSize = pageSize;
+      clear();
+    }
+    return this;
+  }
+
+  /**
+   * Set number of pages loaded ahead of and behind a requested page
+   *
+   * @param prefetchDistance
+   * @return this list
+   */
+  public PagedItems setPrefetchDistance(final int prefetchDistance) {
+    this.prefetchDistance = Math.max(0, prefetchDistance);
+    return this;
+  }
+
+  /**
+   * Set maximum number of pages kept in memory
+   * <p>
+   * At least the requested page and the pages within the prefetch distance
+   * are always kept
+   *
+   * @param maxPages
+   * @return this list
+   */
+  public PagedItems setMaxPages(final int maxPages) {
+    this.maxPages = maxPages;
+    return this;
+  }
+
+  /**
+   * Set executor to load pages on
+   * <p>
+   * Pages are loaded on a shared single thread executor by default
+   *
+   * @param executor
+   * @return this list
+   */
+  public PagedItems setExecutor(final Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Set listener for pages being loaded
+   *
+   * @param listener
+   * @return this list
+   */
+  public PagedItems setListener(final Listener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  /**
+   * Get total number of items
+   *
+   * @return count
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get number of pages currently in memory
+   *
+   * @return page count
+   */
+  public int getResidentPageCount() {
+    return residentPages;
+  }
+
+  /**
+   * Is the item at the given position loaded?
+   *
+   * @param position
+   * @return true if loaded, false if a placeholder or out of range
+   */
+  public boolean isLoaded(final int position) {
+    if (position < 0 || position >= count)
+      return false;
+
+    final Object[] page = pages != null ? pages[position / pageSize] : null;
+    return page != null && position % pageSize < page.length;
+  }
+
+  /**
+   * Get id of item at position without loading its page
+   * <p>
+   * Loaded items have the non-negative id given by
+   * {@link Loader#getItemId(Object)} and placeholders have a negative id
+   * derived from their position
+   *
+   * @param position
+   * @return id
+   */
+  public long getItemId(final int position) {
+    if (!isLoaded(position))
+      return -1 - position;
+
+    final int page = position / pageSize;
+    return loader.getItemId(pages[page][position - page * pageSize]);
+  }
+
+  /**
+   * Get item at position and load its page and the surrounding pages if
+   * needed
+   *
+   * @param position
+   * @return item or null if not loaded yet
+   */
+  public Object get(final int position) {
+    if (position < 0 || position >= count)
+      throw new IndexOutOfBoundsException("Position: " + position + " Size: "
+          + count);
+
+    if (pages == null) {
+      final int pageCount = (count + pageSize - 1) / pageSize;
+      pages = new Object[pageCount][];
+      loading = new boolean[pageCount];
+    }
+
+    final int page = position / pageSize;
+    lastPage = page;
+    request(page);
+    for (int distance = 1; distance <= prefetchDistance; distance++) {
+      request(page + distance);
+      request(page - distance);
+    }
+
+    final Object[] items = pages[page];
+    final int index = position - page * pageSize;
+    return items != null && index < items.length ? items[index] : null;
+  }
+
+  /**
+   * Discard all loaded pages and ignore pages still being loaded
+   *
+   * @return this list
+   */
+  public PagedItems clear() {
+    generation++;
+    pages = null;
+    loading = null;
+    residentPages = 0;
+    return this;
+  }
+
+  private void request(final int page) {
+    if (page < 0 || page >= pages.length || pages[page] != null
+        || loading[page])
+      return;
+
+    loading[page] = true;
+    final int offset = page * pageSize;
+    final int size = Math.min(pageSize, count - offset);
+    final int loadGeneration = generation;
+    final Executor executor = this.executor != null ? this.executor
+        : getDefaultExecutor();
+    executor.execute(new Runnable() {
+
+      public void run() {
+        Object[] items;
+        try {
+          items = loader.load(offset, size);
+        } catch (RuntimeException e) {
+          LogUtils.e("Loading items failed", e);
+          items = null;
+        }
+        final Object[] loaded = items;
+        handler.post(new Runnable() {
+
+          public void run() {
+            onLoaded(loadGeneration, page, loaded);
+          }
+        });
+      }
+    });
+  }
+
+  private void onLoaded(final int loadGeneration, final int page,
+      final Object[] items) {
+    if (loadGeneration != generation)
+      return;
+
+    // Failed pages are requested again the next time they are needed
+    loading[page] = false;
+    if (items == null)
+      return;
+
+    pages[page] = items;
+    residentPages++;
+    evict();
+    if (listener != null && pages[page] != null)
+      listener.onPageLoaded(this, page * pageSize, items.length);
+  }
+
+  private void evict() {
+    final int limit = Math.max(maxPages, 2 * prefetchDistance + 1);
+    while (residentPages > limit) {
+      int farthest = -1;
+      int farthestDistance = -1;
+      for (int page = 0; page < pages.length; page++)
+        if (pages[page] != null
+            && Math.abs(page - lastPage) > farthestDistance) {
+          farthest = page;
+          farthestDistance = Math.abs(page - lastPage);
+        }
+      pages[farthest] = null;
+      residentPages--;
+    }
+  }
+}
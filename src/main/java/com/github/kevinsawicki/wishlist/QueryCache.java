@@ -0,0 +1,249 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import android.annotation.TargetApi;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.v4.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of query results bounded by their estimated size
+ * in bytes
+ * <p>
+ * Results are keyed by SQL and arguments and stored as materialized rows that
+ * are returned in new {@link MatrixCursor} instances, so a cached query does
+ * not touch the database. Each query declares the tables it reads and every
+ * table has a version that {@link #invalidate(String...)} increments. A
+ * result is only returned while the versions of its tables match the versions
+ * read before the query ran, so a write racing with a query never leaves a
+ * stale result cached.
+ */
+public class QueryCache {
+
+  private static class Key {
+
+    final String sql;
+
+    final String[] args;
+
+    final int hash;
+
+    Key(final String sql, final String[] args) {
+      this.sql = sql;
+      this.args = args != null ? args.clone() : new String[0];
+      hash = sql.hashCode() * 31 + Arrays.hashCode(this.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if (object == this)
+        return true;
+      if (!(object instanceof Key))
+        return false;
+      final Key other = (Key) object;
+      return hash == other.hash && sql.equals(other.sql)
+          && Arrays.equals(args, other.args);
+    }
+  }
+
+  private static class Result {
+
+    final String[] columns;
+
+    final List<Object[]> rows;
+
+    final String[] tables;
+
+    final long[] versions;
+
+    final int size;
+
+    Result(final String[] columns, final List<Object[]> rows,
+        final String[] tables, final long[] versions, final int size) {
+      this.columns = columns;
+      this.rows = rows;
+      this.tables = tables;
+      this.versions = versions;
+      this.size = size;
+    }
+  }
+
+  private final LruCache<Key, Result> results;
+
+  private final Map<String, Long> versions = new HashMap<String, Long>();
+
+  /**
+   * Create cache holding results up to the given estimated number of bytes
+   *
+   * @param maxBytes
+   */
+  public QueryCache(final int maxBytes) {
+    results = new LruCache<Key, Result>(maxBytes) {
+
+      @Override
+      protected int sizeOf(final Key key, final Result value) {
+        return value.size;
+      }
+    };
+  }
+
+  private synchronized long[] getVersions(final String[] tables) {
+    final long[] current = new long[tables.length];
+    for (int i = 0; i < tables.length; i++) {
+      final Long version = versions.get(tables[i]);
+      current[i] = version != null ? version : 0;
+    }
+    return current;
+  }
+
+  /**
+   * Increment versions of given tables making all results that read them
+   * stale
+   *
+   * @param tables
+   * @return this cache
+   */
+  public synchronized QueryCache invalidate(final String... tables) {
+    for (String table : tables) {
+      final Long version = versions.get(table);
+      versions.put(table, version != null ? version + 1 : 1);
+    }
+    return this;
+  }
+
+  /**
+   * Remove all cached results
+   *
+   * @return this cache
+   */
+  public QueryCache clear() {
+    results.evictAll();
+    return this;
+  }
+
+  /**
+   * Get cursor over the cached result of the query
+   *
+   * @param sql
+   * @param args
+   * @return cursor or null if no current result is cached
+   */
+  public Cursor get(final String sql, final String[] args) {
+    final Result result = results.get(new Key(sql, args));
+    if (result != null
+        && Arrays.equals(result.versions, getVersions(result.tables)))
+      return createCursor(result);
+    return null;
+  }
+
+  /**
+   * Get cursor over the result of the query running it only if no current
+   * result is cached
+   *
+   * @param database
+   * @param tables
+   *          tables read by the query
+   * @param sql
+   * @param args
+   * @return cursor
+   */
+  public Cursor query(final SQLiteDatabase database, final String[] tables,
+      final String sql, final String[] args) {
+    final Cursor cached = get(sql, args);
+    if (cached != null)
+      return cached;
+
+    final Result result;
+    final long[] before = getVersions(tables);
+    final Cursor cursor = database.rawQuery(sql, args);
+    try {
+      result = materialize(cursor, tables.clone(), before);
+    } finally {
+      cursor.close();
+    }
+    results.put(new Key(sql, args), result);
+    return createCursor(result);
+  }
+
+  private static Cursor createCursor(final Result result) {
+    final MatrixCursor cursor = new MatrixCursor(result.columns,
+        result.rows.size());
+    for (Object[] row : result.rows)
+      cursor.addRow(row);
+    return cursor;
+  }
+
+  private static Result materialize(final Cursor cursor,
+      final String[] tables, final long[] versions) {
+    final String[] columns = cursor.getColumnNames();
+    final List<Object[]> rows = new ArrayList<Object[]>(cursor.getCount());
+    int size = 64;
+    for (String column : columns)
+      size += 40 + 2 * column.length();
+    while (cursor.moveToNext()) {
+      final Object[] row = new Object[columns.length];
+      size += 16 + 4 * row.length;
+      for (int i = 0; i < row.length; i++) {
+        row[i] = SDK_INT >= HONEYCOMB ? getValue(cursor, i) : cursor
+            .getString(i);
+        size += sizeOf(row[i]);
+      }
+      rows.add(row);
+    }
+    return new Result(columns, rows, tables, versions, size);
+  }
+
+  @TargetApi(HONEYCOMB)
+  private static Object getValue(final Cursor cursor, final int column) {
+    switch (cursor.getType(column)) {
+    case Cursor.FIELD_TYPE_INTEGER:
+      return cursor.getLong(column);
+    case Cursor.FIELD_TYPE_FLOAT:
+      return cursor.getDouble(column);
+    case Cursor.FIELD_TYPE_STRING:
+      return cursor.getString(column);
+    case Cursor.FIELD_TYPE_BLOB:
+      return cursor.getBlob(column);
+    default:
+      return null;
+    }
+  }
+
+  private static int sizeOf(final Object value) {
+    if (value instanceof String)
+      return 40 + 2 * ((String) value).length();
+    if (value instanceof byte[])
+      return 16 + ((byte[]) value).length;
+    if (value != null)
+      return 16;
+    return 0;
+  }
+}
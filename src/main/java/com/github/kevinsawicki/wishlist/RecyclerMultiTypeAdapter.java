@@ -0,0 +1,295 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link android.support.v7.widget.RecyclerView} adapter for lists where
+ * multiple view types are needed
+ */
+public abstract class RecyclerMultiTypeAdapter extends RecyclerTypeAdapter {
+
+  private final LayoutInflater inflater;
+
+  private final int[] layout;
+
+  private final int[][] children;
+
+  private final TypedItems items = new TypedItems();
+
+  /**
+   * Create adapter
+   *
+   * @param activity
+   */
+  public RecyclerMultiTypeAdapter(final Activity activity) {
+    this(activity.getLayoutInflater());
+  }
+
+  /**
+   * Create adapter
+   *
+   * @param context
+   */
+  public RecyclerMultiTypeAdapter(final Context context) {
+    this(LayoutInflater.from(context));
+  }
+
+  /**
+   * Create adapter
+   *
+   * @param inflater
+   */
+  public RecyclerMultiTypeAdapter(final LayoutInflater inflater) {
+    this.inflater = inflater;
+
+    setHasStableIds(true);
+
+    int[] empty = new int[0];
+    int count = getViewTypeCount();
+    children = new int[count][];
+    layout = new int[count];
+    for (int i = 0; i < count; i++) {
+      int[] ids = getChildViewIds(i);
+      if (ids == null)
+        ids = empty;
+      children[i] = ids;
+      layout[i] = getChildLayoutId(i);
+    }
+  }
+
+  /**
+   * Clear all items
+   *
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter clear() {
+    final int count = items.size();
+    items.clear();
+
+    if (count > 0)
+      notifyItemRangeRemoved(0, count);
+    return this;
+  }
+
+  /**
+   * Set provider of the identities used to assign stable item ids
+   * <p>
+   * The provider only applies to items added after this method is called
+   *
+   * @param provider
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter setItemIdProvider(
+      final ItemIdProvider provider) {
+    items.setProvider(provider);
+    return this;
+  }
+
+  /**
+   * Add item to adapter registered as the given type
+   *
+   * @param type
+   * @param item
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter addItem(final int type, final Object item) {
+    items.add(type, item);
+
+    notifyItemInserted(items.size() - 1);
+    return this;
+  }
+
+  /**
+   * Insert item at position registered as the given type
+   *
+   * @param position
+   * @param type
+   * @param item
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter insertItem(final int position,
+      final int type, final Object item) {
+    items.insert(position, type, item);
+
+    notifyItemInserted(position);
+    return this;
+  }
+
+  /**
+   * Add items to adapter registered as the given type
+   *
+   * @param type
+   * @param items
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter addItems(final int type, final Object[] items) {
+    return onAdded(this.items.addAll(type, items));
+  }
+
+  private RecyclerMultiTypeAdapter onAdded(final int count) {
+    if (count > 0)
+      notifyItemRangeInserted(items.size() - count, count);
+    return this;
+  }
+
+  /**
+   * Add items to adapter registered as the given type
+   *
+   * @param type
+   * @param items
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter addItems(final int type,
+      final Collection<?> items) {
+    return onAdded(this.items.addAll(type, items));
+  }
+
+  /**
+   * Remove item at position
+   *
+   * @param position
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter removeItem(final int position) {
+    if (items.remove(position))
+      notifyItemRemoved(position);
+    return this;
+  }
+
+  /**
+   * Move item to a new position keeping its id
+   * <p>
+   * Positions outside of the items are ignored
+   *
+   * @param fromPosition
+   * @param toPosition
+   * @return this adapter
+   */
+  public RecyclerMultiTypeAdapter moveItem(final int fromPosition,
+      final int toPosition) {
+    if (items.move(fromPosition, toPosition))
+      notifyItemMoved(fromPosition, toPosition);
+    return this;
+  }
+
+  /**
+   * Get number of view types
+   *
+   * @return view type count
+   */
+  public abstract int getViewTypeCount();
+
+  /**
+   * Get layout id for type
+   *
+   * @param type
+   * @return layout id
+   */
+  protected abstract int getChildLayoutId(int type);
+
+  /**
+   * Get child view ids for type
+   * <p>
+   * The index of each id in the returned array should be used when using the
+   * helpers to update a specific child view
+   *
+   * @param type
+   * @return array of view ids
+   */
+  protected abstract int[] getChildViewIds(int type);
+
+  @Override
+  public int getItemCount() {
+    return items.size();
+  }
+
+  /**
+   * Get item at position
+   *
+   * @param position
+   * @return item
+   */
+  public Object getItem(final int position) {
+    return items.getItem(position);
+  }
+
+  @Override
+  public long getItemId(final int position) {
+    return items.getId(position);
+  }
+
+  @Override
+  public int getItemViewType(final int position) {
+    return items.getType(position);
+  }
+
+  /**
+   * Update view for item
+   *
+   * @param position
+   * @param item
+   * @param type
+   */
+  protected abstract void update(int position, Object item, int type);
+
+  /**
+   * Update view for item with partial change payloads
+   * <p>
+   * The default behavior is to fully update the item
+   *
+   * @param position
+   * @param item
+   * @param type
+   * @param payloads
+   *          non-empty list of payloads passed to
+   *          {@link #notifyItemChanged(int, Object)}
+   */
+  protected void update(final int position, final Object item,
+      final int type, final List<Object> payloads) {
+    update(position, item, type);
+  }
+
+  @Override
+  public ViewHolder onCreateViewHolder(final ViewGroup parent, final int type) {
+    return newViewHolder(inflater.inflate(layout[type], parent, false),
+        children[type]);
+  }
+
+  @Override
+  public void onBindViewHolder(final ViewHolder holder, final int position) {
+    setCurrentView(holder);
+    update(position, getItem(position), holder.getItemViewType());
+  }
+
+  @Override
+  public void onBindViewHolder(final ViewHolder holder, final int position,
+      final List<Object> payloads) {
+    if (payloads.isEmpty())
+      onBindViewHolder(holder, position);
+    else {
+      setCurrentView(holder);
+      update(position, getItem(position), holder.getItemViewType(), payloads);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link android.support.v7.widget.RecyclerView} adapter for lists where only
+ * a single view type is used
+ *
+ * @param <V>
+ */
+public abstract class RecyclerSingleTypeAdapter<V> extends RecyclerTypeAdapter {
+
+  private final LayoutInflater inflater;
+
+  private final int layout;
+
+  private final int[] children;
+
+  private final ItemArray items = new ItemArray();
+
+  private final ItemArray.DiffListener diffListener = new ItemArray.DiffListener() {
+
+    public void onItemsDiffed(final ItemDiff diff) {
+      diff.dispatchUpdates(notifier);
+    }
+  };
+
+  /**
+   * Create adapter
+   *
+   * @param activity
+   * @param layoutResourceId
+   */
+  public RecyclerSingleTypeAdapter(final Activity activity,
+      final int layoutResourceId) {
+    this(activity.getLayoutInflater(), layoutResourceId);
+  }
+
+  /**
+   * Create adapter
+   *
+   * @param context
+   * @param layoutResourceId
+   */
+  public RecyclerSingleTypeAdapter(final Context context,
+      final int layoutResourceId) {
+    this(LayoutInflater.from(context), layoutResourceId);
+  }
+
+  /**
+   * Create adapter
+   *
+   * @param inflater
+   * @param layoutResourceId
+   */
+  public RecyclerSingleTypeAdapter(final LayoutInflater inflater,
+      final int layoutResourceId) {
+    this.inflater = inflater;
+    this.layout = layoutResourceId;
+
+    setHasStableIds(true);
+
+    int[] childIds = getChildViewIds();
+    if (childIds == null)
+      childIds = new int[0];
+    children = childIds;
+  }
+
+  /**
+   * Get a list of all items
+   *
+   * @return list of all items
+   */
+  @SuppressWarnings("unchecked")
+  protected List<V> getItems() {
+    List<? extends Object> objList = items.asList();
+    return (List<V>) objList;
+  }
+
+  /**
+   * Set items to display
+   *
+   * @param items
+   */
+  public void setItems(final Collection<?> items) {
+    setItems(ItemArray.toArray(items));
+  }
+
+  /**
+   * Set items to display
+   *
+   * @param items
+   */
+  public void setItems(final Object[] items) {
+    this.items.set(items);
+    notifyDataSetChanged();
+  }
+
+  /**
+   * Set items to display after calculating the difference from the current
+   * items on a background thread
+   *
+   * @param items
+   * @param callback
+   */
+  public void setItemsDiffed(final Collection<?> items,
+      final ItemDiff.Callback callback) {
+    setItemsDiffed(ItemArray.toArray(items), callback);
+  }
+
+  /**
+   * Set items to display after calculating the difference from the current
+   * items on a background thread
+   * <p>
+   * The given array must not be modified after calling this method. Once the
+   * new items are in place only the inserted, removed, moved and changed ranges
+   * are notified.
+   *
+   * @param items
+   * @param callback
+   */
+  public void setItemsDiffed(final Object[] items,
+      final ItemDiff.Callback callback) {
+    this.items.setDiffed(items, callback, diffListener);
+  }
+
+  /**
+   * Set provider of the identities used to assign stable item ids
+   *
+   * @param provider
+   * @return this adapter
+   */
+  public RecyclerSingleTypeAdapter<V> setItemIdProvider(
+      final ItemIdProvider provider) {
+    if (items.setProvider(provider))
+      notifyDataSetChanged();
+    return this;
+  }
+
+  @Override
+  public int getItemCount() {
+    return items.size();
+  }
+
+  /**
+   * Get item at position
+   *
+   * @param position
+   * @return item
+   */
+  @SuppressWarnings("unchecked")
+  public V getItem(final int position) {
+    return (V) items.get(position);
+  }
+
+  @Override
+  public long getItemId(final int position) {
+    return items.getId(position);
+  }
+
+  /**
+   * Get child view ids to store
+   * <p>
+   * The index of each id in the returned array should be used when using the
+   * helpers to update a specific child view
+   *
+   * @return ids
+   */
+  protected abstract int[] getChildViewIds();
+
+  /**
+   * Update item
+   *
+   * @param position
+   * @param item
+   */
+  protected abstract void update(int position, V item);
+
+  /**
+   * Update item with partial change payloads
+   * <p>
+   * The default behavior is to fully update the item
+   *
+   * @param position
+   * @param item
+   * @param payloads
+   *          non-empty list of payloads passed to
+   *          {@link #notifyItemChanged(int, Object)}
+   */
+  protected void update(final int position, final V item,
+      final List<Object> payloads) {
+    update(position, item);
+  }
+
+  @Override
+  public ViewHolder onCreateViewHolder(final ViewGroup parent,
+      final int viewType) {
+    return newViewHolder(inflater.inflate(layout, parent, false), children);
+  }
+
+  @Override
+  public void onBindViewHolder(final ViewHolder holder, final int position) {
+    setCurrentView(holder);
+    update(position, getItem(position));
+  }
+
+  @Override
+  public void onBindViewHolder(final ViewHolder holder, final int position,
+      final List<Object> payloads) {
+    if (payloads.isEmpty())
+      onBindViewHolder(holder, position);
+    else {
+      setCurrentView(holder);
+      update(position, getItem(position), payloads);
+    }
+  }
+}
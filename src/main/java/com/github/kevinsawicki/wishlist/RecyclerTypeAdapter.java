@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.support.v7.widget.RecyclerView;
+import android.text.Layout;
+import android.view.View;
+import android.widget.CompoundButton;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+/**
+ * Base {@link RecyclerView} adapter
+ */
+public abstract class RecyclerTypeAdapter extends
+    RecyclerView.Adapter<RecyclerTypeAdapter.ViewHolder> {
+
+  /**
+   * View holder of a root view and its indexed child views
+   */
+  public static class ViewHolder extends RecyclerView.ViewHolder {
+
+    /**
+     * Indexed child views
+     */
+    public final View[] children;
+
+    /**
+     * Create view holder for view initialized by
+     * {@link ViewUpdater#initialize(View, int[])}
+     *
+     * @param view
+     * @param children
+     */
+    public ViewHolder(final View view, final View[] children) {
+      super(view);
+
+      this.children = children;
+    }
+  }
+
+  /**
+   * Updater for current view
+   */
+  protected final ViewUpdater updater = new ViewUpdater();
+
+  /**
+   * Listener that forwards difference operations as ranged notifications
+   */
+  protected final ItemDiff.UpdateListener notifier = new ItemDiff.UpdateListener() {
+
+    public void onInserted(final int position, final int count) {
+      notifyItemRangeInserted(position, count);
+    }
+
+    public void onRemoved(final int position, final int count) {
+      notifyItemRangeRemoved(position, count);
+    }
+
+    public void onMoved(final int fromPosition, final int toPosition) {
+      notifyItemMoved(fromPosition, toPosition);
+    }
+
+    public void onChanged(final int position, final int count) {
+      notifyItemRangeChanged(position, count);
+    }
+  };
+
+  /**
+   * Create view holder by binding indexed child views to tags on the root view
+   *
+   * @param view
+   * @param children
+   * @return view holder
+   */
+  protected ViewHolder newViewHolder(final View view, final int[] children) {
+    updater.initialize(view, children);
+    return new ViewHolder(view, updater.childViews);
+  }
+
+  /**
+   * Set view holder that is currently being updated
+   *
+   * @param holder
+   */
+  protected void setCurrentView(final ViewHolder holder) {
+    updater.setCurrentView(holder.itemView, holder.children);
+  }
+
+  /**
+   * Get text view at given index
+   *
+   * @param childViewIndex
+   * @return text view
+   */
+  protected TextView textView(final int childViewIndex) {
+    return updater.textView(childViewIndex);
+  }
+
+  /**
+   * Get image view at given index
+   *
+   * @param childViewIndex
+   * @return image view
+   */
+  protected ImageView imageView(final int childViewIndex) {
+    return updater.imageView(childViewIndex);
+  }
+
+  /**
+   * Get view at given index
+   *
+   * @param childViewIndex
+   * @return view
+   */
+  protected <V extends View> V view(final int childViewIndex) {
+    return updater.view(childViewIndex);
+  }
+
+  /**
+   * Set text on text view at given index
+   *
+   * @param childViewIndex
+   * @param text
+   * @return text view
+   */
+  protected TextView setText(final int childViewIndex, final CharSequence text) {
+    return updater.setText(childViewIndex, text);
+  }
+
+  /**
+   * Set text on text view at index to string resource
+   *
+   * @param childViewIndex
+   * @param resourceId
+   * @return text view
+   */
+  protected TextView setText(final int childViewIndex, final int resourceId) {
+    return updater.setText(childViewIndex, resourceId);
+  }
+
+  /**
+   * Set text on text view to be formatted version of given integer number
+   * <p>
+   * This method uses an {@link IntegerFormatter} for the default locale and
+   * does not allocate
+   *
+   * @param childViewIndex
+   * @param number
+   * @return text view
+   */
+  protected TextView setNumber(final int childViewIndex, final long number) {
+    return updater.setNumber(childViewIndex, number);
+  }
+
+  /**
+   * Get child view
+   *
+   * @param childViewIndex
+   * @param childViewClass
+   * @return child view
+   */
+  protected <T> T getView(final int childViewIndex,
+      final Class<T> childViewClass) {
+    return updater.getView(childViewIndex, childViewClass);
+  }
+
+  /**
+   * Set child view as gone or visible
+   *
+   * @param childViewIndex
+   * @param gone
+   * @return child view
+   */
+  protected View setGone(final int childViewIndex, boolean gone) {
+    return updater.setGone(childViewIndex, gone);
+  }
+
+  /**
+   * Set the checked state of the {@link CompoundButton} with at index
+   *
+   * @param childViewIndex
+   * @param checked
+   * @return check box
+   */
+  protected CompoundButton setChecked(final int childViewIndex,
+      final boolean checked) {
+    return updater.setChecked(childViewIndex, checked);
+  }
+
+  /**
+   * Set layout to draw on the {@link TextLayoutView} at given index
+   *
+   * @param childViewIndex
+   * @param layout
+   * @return text layout view
+   */
+  protected TextLayoutView setTextLayout(final int childViewIndex,
+      final Layout layout) {
+    return updater.setTextLayout(childViewIndex, layout);
+  }
+
+  /**
+   * Set the text on the text view if it is non-empty and make the view gone if
+   * it is empty
+   *
+   * @param childViewIndex
+   * @param text
+   * @return text view
+   */
+  public TextView setVisibleText(final int childViewIndex,
+      final CharSequence text) {
+    return updater.setVisibleText(childViewIndex, text);
+  }
+
+  /**
+   * Set relative time span on text view
+   *
+   * @param childViewIndex
+   * @param time
+   * @return text view
+   */
+  public TextView setRelativeTimeSpan(final int childViewIndex, final long time) {
+    return updater.setRelativeTimeSpan(childViewIndex, time);
+  }
+}
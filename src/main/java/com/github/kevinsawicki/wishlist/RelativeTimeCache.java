@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.text.format.DateUtils.DAY_IN_MILLIS;
+import static android.text.format.DateUtils.HOUR_IN_MILLIS;
+import static android.text.format.DateUtils.MINUTE_IN_MILLIS;
+import static android.text.format.DateUtils.WEEK_IN_MILLIS;
+import android.text.format.DateUtils;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Cache of relative time spans formatted by
+ * {@link DateUtils#getRelativeTimeSpanString(long, long, long)}
+ * <p>
+ * Spans less than a week apart are cached by their minute, hour or day count
+ * so that times falling in the same bucket share one formatted string. Spans
+ * of a week or more are formatted as dates and are not cached.
+ * <p>
+ * This class is not thread-safe and the cache should be cleared when the
+ * locale or time zone changes.
+ */
+public class RelativeTimeCache {
+
+  private static final int MAX_SIZE = 512;
+
+  private static final int MINUTES = 0;
+
+  private static final int HOURS = 1;
+
+  private static final int DAYS = 2;
+
+  private TimeZone timeZone = TimeZone.getDefault();
+
+  private long[] keys = new long[32];
+
+  private CharSequence[] values = new CharSequence[32];
+
+  private int size;
+
+  /**
+   * Clear all formatted spans
+   *
+   * @return this cache
+   */
+  public RelativeTimeCache clear() {
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+    timeZone = TimeZone.getDefault();
+    return this;
+  }
+
+  private long getDay(final long time) {
+    return (time + timeZone.getOffset(time)) / DAY_IN_MILLIS;
+  }
+
+  /**
+   * Format span between given time and now
+   *
+   * @param time
+   * @param now
+   * @return formatted span
+   */
+  public CharSequence format(final long time, final long now) {
+    final boolean past = now >= time;
+    final long duration = past ? now - time : time - now;
+    if (duration >= WEEK_IN_MILLIS)
+      return DateUtils.getRelativeTimeSpanString(time, now, MINUTE_IN_MILLIS);
+
+    // Newer platforms count days by calendar date rather than elapsed time
+    // so both counts are part of the key
+    long key;
+    if (duration < HOUR_IN_MILLIS)
+      key = MINUTES << 24 | duration / MINUTE_IN_MILLIS;
+    else if (duration < DAY_IN_MILLIS)
+      key = HOURS << 24 | duration / HOUR_IN_MILLIS;
+    else
+      key = DAYS << 24 | Math.abs(getDay(now) - getDay(time)) << 8 | duration
+          / DAY_IN_MILLIS;
+    key = key << 1 | (past ? 1 : 0);
+
+    int index = Arrays.binarySearch(keys, 0, size, key);
+    if (index >= 0)
+      return values[index];
+
+    final CharSequence formatted = DateUtils.getRelativeTimeSpanString(time,
+        now, MINUTE_IN_MILLIS);
+    if (size == MAX_SIZE) {
+      clear();
+      index = 0;
+    } else
+      index = -1 - index;
+    if (size == keys.length) {
+      keys = Arrays.copyOf(keys, size * 2);
+      values = Arrays.copyOf(values, size * 2);
+    }
+    System.arraycopy(keys, index, keys, index + 1, size - index);
+    System.arraycopy(values, index, values, index + 1, size - index);
+    keys[index] = key;
+    values[index] = formatted;
+    size++;
+    return formatted;
+  }
+
+  /**
+   * Get time at which the span between the given time and now will next be
+   * formatted differently
+   *
+   * @param time
+   * @param now
+   * @return time of next change or {@link Long#MAX_VALUE} if the span will not
+   *         change
+   */
+  public long getNextChange(final long time, final long now) {
+    final boolean past = now >= time;
+    final long duration = past ? now - time : time - now;
+    final long unit;
+    if (duration < HOUR_IN_MILLIS)
+      unit = MINUTE_IN_MILLIS;
+    else if (duration < DAY_IN_MILLIS)
+      unit = HOUR_IN_MILLIS;
+    else if (duration < WEEK_IN_MILLIS)
+      unit = DAY_IN_MILLIS;
+    else if (past)
+      return Long.MAX_VALUE;
+    else
+      return time - WEEK_IN_MILLIS + 1;
+
+    long next;
+    if (past)
+      next = time + (duration / unit + 1) * unit;
+    else
+      next = time - duration / unit * unit + 1;
+    if (unit == DAY_IN_MILLIS) {
+      final long midnight = (getDay(now) + 1) * DAY_IN_MILLIS
+          - timeZone.getOffset(now);
+      if (midnight > now)
+        next = Math.min(next, midnight);
+    }
+    return next;
+  }
+}
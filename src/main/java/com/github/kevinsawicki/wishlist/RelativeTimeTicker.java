@@ -0,0 +1,219 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
+import android.annotation.TargetApi;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Ticker that keeps relative time spans shown in text views up to date
+ * <p>
+ * Text views are tracked from when a time is set until they show other text
+ * or are detached from their window. A single callback is scheduled for the
+ * earliest time at which a tracked span would be formatted differently and
+ * only the views whose span changed are updated when it runs.
+ * <p>
+ * This class must only be used from the main thread.
+ */
+public class RelativeTimeTicker {
+
+  private static class Entry {
+
+    long time;
+
+    long nextChange;
+
+    CharSequence text;
+  }
+
+  @TargetApi(JELLY_BEAN)
+  private static class FrameScheduler implements Choreographer.FrameCallback {
+
+    private final RelativeTimeTicker ticker;
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+
+    FrameScheduler(final RelativeTimeTicker ticker) {
+      this.ticker = ticker;
+    }
+
+    void schedule(final long delay) {
+      choreographer.removeFrameCallback(this);
+      choreographer.postFrameCallbackDelayed(this, delay);
+    }
+
+    public void doFrame(final long frameTimeNanos) {
+      ticker.tick();
+    }
+  }
+
+  private static RelativeTimeTicker instance;
+
+  /**
+   * Get ticker for the main thread
+   *
+   * @return ticker
+   */
+  public static RelativeTimeTicker get() {
+    if (instance == null)
+      instance = new RelativeTimeTicker();
+    return instance;
+  }
+
+  private final Map<TextView, Entry> entries = new WeakHashMap<TextView, Entry>();
+
+  private final RelativeTimeCache cache = new RelativeTimeCache();
+
+  private final Runnable tick = new Runnable() {
+
+    public void run() {
+      tick();
+    }
+  };
+
+  private Handler handler;
+
+  private FrameScheduler frameScheduler;
+
+  private long scheduledTime = Long.MAX_VALUE;
+
+  /**
+   * Get cache of formatted spans
+   *
+   * @return cache
+   */
+  public RelativeTimeCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Get number of text views currently tracked
+   *
+   * @return view count
+   */
+  public int getTrackedCount() {
+    return entries.size();
+  }
+
+  /**
+   * Set relative time span on text view and keep it updated
+   *
+   * @param view
+   * @param time
+   * @return true if the text of the view was changed, false if it already
+   *         showed the current span
+   */
+  public boolean setTime(final TextView view, final long time) {
+    final long now = System.currentTimeMillis();
+    final CharSequence text = cache.format(time, now);
+    Entry entry = entries.get(view);
+    if (entry == null) {
+      entry = new Entry();
+      entries.put(view, entry);
+    }
+    final boolean changed = !TextUtils.equals(view.getText(), text);
+    if (changed)
+      view.setText(text);
+    entry.time = time;
+    entry.text = view.getText();
+    entry.nextChange = cache.getNextChange(time, now);
+    schedule(entry.nextChange, now);
+    return changed;
+  }
+
+  /**
+   * Stop updating the text view
+   *
+   * @param view
+   * @return this ticker
+   */
+  public RelativeTimeTicker remove(final TextView view) {
+    entries.remove(view);
+    return this;
+  }
+
+  /**
+   * Reformat all tracked views, for example after the locale or time zone
+   * changed
+   *
+   * @return this ticker
+   */
+  public RelativeTimeTicker refresh() {
+    cache.clear();
+    for (Entry entry : entries.values())
+      entry.nextChange = 0;
+    tick();
+    return this;
+  }
+
+  private void schedule(final long nextChange, final long now) {
+    if (nextChange >= scheduledTime || nextChange == Long.MAX_VALUE)
+      return;
+
+    scheduledTime = nextChange;
+    final long delay = Math.max(0, nextChange - now);
+    if (SDK_INT >= JELLY_BEAN) {
+      if (frameScheduler == null)
+        frameScheduler = new FrameScheduler(this);
+      frameScheduler.schedule(delay);
+    } else {
+      if (handler == null)
+        handler = new Handler(Looper.getMainLooper());
+      handler.removeCallbacks(tick);
+      handler.postDelayed(tick, delay);
+    }
+  }
+
+  private void tick() {
+    scheduledTime = Long.MAX_VALUE;
+    final long now = System.currentTimeMillis();
+    long next = Long.MAX_VALUE;
+    final Iterator<Map.Entry<TextView, Entry>> iterator = entries.entrySet()
+        .iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<TextView, Entry> mapping = iterator.next();
+      final TextView view = mapping.getKey();
+      final Entry entry = mapping.getValue();
+      // Stop tracking views rebound to other text or no longer attached
+      if (view == null || view.getWindowToken() == null
+          || !TextUtils.equals(view.getText(), entry.text)) {
+        iterator.remove();
+        continue;
+      }
+
+      if (entry.nextChange <= now) {
+        final CharSequence text = cache.format(entry.time, now);
+        if (!TextUtils.equals(text, entry.text)) {
+          view.setText(text);
+          entry.text = view.getText();
+        }
+        entry.nextChange = cache.getNextChange(entry.time, now);
+      }
+      next = Math.min(next, entry.nextChange);
+    }
+    schedule(next, now);
+  }
+}
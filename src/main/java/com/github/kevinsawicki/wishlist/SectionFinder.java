@@ -16,22 +16,37 @@
 package com.github.kevinsawicki.wishlist;
 
 import android.text.TextUtils;
-import android.util.SparseIntArray;
 import android.widget.SectionIndexer;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Section finder helper
+ * <p>
+ * Items are stored as runs of consecutive positions in the same section so
+ * memory use and lookup time depend on the number of runs, which is the
+ * number of sections when the items are sorted, rather than the number of
+ * items. Items can be appended at any time without re-indexing.
  */
 public class SectionFinder implements SectionIndexer {
 
-  private final Set<Object> sections = new LinkedHashSet<Object>();
+  private final List<Object> sections = new ArrayList<Object>();
 
-  private final SparseIntArray sectionPositions = new SparseIntArray();
+  private final Map<Object, Integer> sectionIndices = new HashMap<Object, Integer>();
 
-  private final SparseIntArray itemSections = new SparseIntArray();
+  private int[] sectionPositions = new int[16];
+
+  private int[] runStarts = new int[16];
+
+  private int[] runSections = new int[16];
+
+  private int runs;
+
+  private Object[] sectionArray;
 
   private int index = 0;
 
@@ -42,12 +57,22 @@ public class SectionFinder implements SectionIndexer {
    */
   public SectionFinder clear() {
     sections.clear();
-    sectionPositions.clear();
-    itemSections.clear();
+    sectionIndices.clear();
+    sectionArray = null;
+    runs = 0;
     index = 0;
     return this;
   }
 
+  /**
+   * Get number of indexed items
+   *
+   * @return item count
+   */
+  public int getItemCount() {
+    return index;
+  }
+
   /**
    * Get section for item
    * <p>
@@ -65,15 +90,34 @@ public class SectionFinder implements SectionIndexer {
       return '?';
   }
 
-  private void addSection(Object section) {
-    int count = sections.size();
-    if (sections.add(section))
-      sectionPositions.put(count, index);
+  private int addSection(final Object section) {
+    Integer sectionIndex = sectionIndices.get(section);
+    if (sectionIndex == null) {
+      sectionIndex = sections.size();
+      sections.add(section);
+      sectionIndices.put(section, sectionIndex);
+      sectionArray = null;
+      if (sectionIndex == sectionPositions.length)
+        sectionPositions = Arrays.copyOf(sectionPositions, sectionIndex * 2);
+      sectionPositions[sectionIndex] = index;
+    }
+    return sectionIndex;
   }
 
-  private void addItem(Object item) {
-    itemSections.put(index, sections.size());
-    index++;
+  private void addItems(final int sectionIndex, final int count) {
+    final int start = index;
+    index += count;
+
+    // Consecutive items in the same section share a single run
+    if (runs > 0 && runSections[runs - 1] == sectionIndex)
+      return;
+    if (runs == runStarts.length) {
+      runStarts = Arrays.copyOf(runStarts, runs * 2);
+      runSections = Arrays.copyOf(runSections, runs * 2);
+    }
+    runStarts[runs] = start;
+    runSections[runs] = sectionIndex;
+    runs++;
   }
 
   /**
@@ -84,8 +128,7 @@ public class SectionFinder implements SectionIndexer {
    */
   public SectionFinder index(Object... items) {
     for (Object item : items) {
-      addSection(getSection(item));
-      addItem(item);
+      addItems(addSection(getSection(item)), 1);
     }
     return this;
   }
@@ -98,21 +141,37 @@ public class SectionFinder implements SectionIndexer {
    * @return this finder
    */
   public SectionFinder add(final Object section, final Object... items) {
-    addSection(section);
-    for (Object item : items)
-      addItem(item);
+    final int sectionIndex = addSection(section);
+    if (items.length > 0)
+      addItems(sectionIndex, items.length);
     return this;
   }
 
   public int getPositionForSection(final int section) {
-    return sectionPositions.get(section);
+    if (section < 0 || section >= sections.size())
+      return 0;
+    return sectionPositions[section];
   }
 
   public int getSectionForPosition(final int position) {
-    return itemSections.get(position);
+    if (position < 0 || position >= index)
+      return 0;
+
+    int low = 0;
+    int high = runs - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (runStarts[middle] <= position)
+        low = middle;
+      else
+        high = middle - 1;
+    }
+    return runSections[low];
   }
 
   public Object[] getSections() {
-    return sections.toArray();
+    if (sectionArray == null)
+      sectionArray = sections.toArray();
+    return sectionArray;
   }
 }
@@ -69,8 +69,13 @@ public abstract class SectionMultiTypeAdapter extends MultiTypeAdapter
       final Object section, final int itemType, final Object[] items) {
     sections.add(section, section).add(section, items);
 
-    super.addItem(sectionType, section);
-    super.addItems(itemType, items);
+    beginBatch();
+    try {
+      super.addItem(sectionType, section);
+      super.addItems(itemType, items);
+    } finally {
+      endBatch();
+    }
 
     return this;
   }
@@ -17,6 +17,7 @@ package com.github.kevinsawicki.wishlist;
 
 import android.app.Activity;
 import android.content.Context;
+import android.os.AsyncTask;
 import android.view.LayoutInflater;
 import android.widget.SectionIndexer;
 
@@ -26,7 +27,12 @@ import android.widget.SectionIndexer;
 public abstract class SectionSingleTypeAdapter<V> extends SingleTypeAdapter<V>
     implements SectionIndexer {
 
-  private final SectionFinder sections = new SectionFinder();
+  // Overridden factories are only called once sub-classes are constructed
+  private SectionFinder sections = new SectionFinder();
+
+  private boolean indexAsync;
+
+  private IndexTask indexTask;
 
   /**
    * @param activity
@@ -52,11 +58,107 @@ public abstract class SectionSingleTypeAdapter<V> extends SingleTypeAdapter<V>
     super(inflater, layoutResourceId);
   }
 
+  /**
+   * Create finder used to index the sections of the items
+   * <p>
+   * The finder may be used on a background thread when indexing
+   * asynchronously
+   *
+   * @return section finder
+   */
+  protected SectionFinder createSectionFinder() {
+    return new SectionFinder();
+  }
+
+  /**
+   * Set whether sections are indexed on a background thread
+   * <p>
+   * While indexing asynchronously there are no sections until the index of
+   * the current items is ready, at which point the data set is notified as
+   * changed so fast scrolling picks up the new sections
+   *
+   * @param async
+   * @return this adapter
+   */
+  public SectionSingleTypeAdapter<V> setIndexingAsync(final boolean async) {
+    indexAsync = async;
+    return this;
+  }
+
+  /**
+   * Are sections being indexed?
+   *
+   * @return true if indexing on a background thread, false otherwise
+   */
+  public boolean isIndexing() {
+    return indexTask != null;
+  }
+
+  private void index(final Object[] items) {
+    if (indexTask != null) {
+      indexTask.cancel(false);
+      indexTask = null;
+    }
+
+    if (items == null || items.length == 0)
+      sections = createSectionFinder();
+    else if (indexAsync) {
+      sections = createSectionFinder();
+      indexTask = new IndexTask(createSectionFinder(), items);
+      AsyncTaskUtils.executeTask(indexTask);
+    } else
+      sections = createSectionFinder().index(items);
+  }
+
+  private class IndexTask extends AsyncTask<Void, Void, SectionFinder> {
+
+    private final SectionFinder finder;
+
+    private final Object[] items;
+
+    private IndexTask(final SectionFinder finder, final Object[] items) {
+      this.finder = finder;
+      this.items = items;
+    }
+
+    @Override
+    protected SectionFinder doInBackground(final Void... params) {
+      if (isCancelled())
+        return null;
+      return finder.index(items);
+    }
+
+    @Override
+    protected void onPostExecute(final SectionFinder finder) {
+      if (indexTask != this || finder == null)
+        return;
+
+      indexTask = null;
+      sections = finder;
+      notifyDataSetChanged();
+    }
+  }
+
   @Override
   public void setItems(Object[] items) {
     super.setItems(items);
 
-    sections.clear().index(items);
+    index(items);
+  }
+
+  @Override
+  public void setPagedItems(final PagedItems items) {
+    super.setPagedItems(items);
+
+    // Sections can only be indexed from items that are all loaded
+    index(null);
+  }
+
+  @Override
+  protected void onItemsDiffed(final ItemDiff diff) {
+    index(getItems().toArray());
+
+    super.onItemsDiffed(diff);
   }
 
   public int getPositionForSection(int section) {
@@ -20,8 +20,8 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Filterable;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -30,9 +30,8 @@ import java.util.List;
  *
  * @param <V>
  */
-public abstract class SingleTypeAdapter<V> extends TypeAdapter {
-
-  private static final Object[] EMPTY = new Object[0];
+public abstract class SingleTypeAdapter<V> extends TypeAdapter implements
+    Filterable {
 
   private final LayoutInflater inflater;
 
@@ -40,7 +39,30 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
 
   private final int[] children;
 
-  private Object[] items;
+  private final ItemArray items = new ItemArray();
+
+  private PagedItems pagedItems;
+
+  private ItemFilter filter;
+
+  private boolean publishingFilter;
+
+  private final ItemArray.DiffListener diffListener = new ItemArray.DiffListener() {
+
+    public void onItemsDiffed(final ItemDiff diff) {
+      updateFilterSource();
+      SingleTypeAdapter.this.onItemsDiffed(diff);
+    }
+  };
+
+  private final PagedItems.Listener pageListener = new PagedItems.Listener() {
+
+    public void onPageLoaded(final PagedItems items, final int offset,
+        final int count) {
+      if (items == pagedItems)
+        notifyDataSetChanged();
+    }
+  };
 
   /**
    * Create adapter
@@ -73,8 +95,6 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
     this.inflater = inflater;
     this.layout = layoutResourceId;
 
-    items = EMPTY;
-
     int[] childIds = getChildViewIds();
     if (childIds == null)
       childIds = new int[0];
@@ -83,12 +103,14 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
 
   /**
    * Get a list of all items
+   * <p>
+   * The list is empty while displaying {@link PagedItems}
    *
    * @return list of all items
    */
   @SuppressWarnings("unchecked")
   protected List<V> getItems() {
-    List<? extends Object> objList = Arrays.asList(items);
+    List<? extends Object> objList = items.asList();
     return (List<V>) objList;
   }
 
@@ -98,10 +120,7 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
    * @param items
    */
   public void setItems(final Collection<?> items) {
-    if (items != null && !items.isEmpty())
-      setItems(items.toArray());
-    else
-      setItems(EMPTY);
+    setItems(ItemArray.toArray(items));
   }
 
   /**
@@ -110,26 +129,196 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
    * @param items
    */
   public void setItems(final Object[] items) {
+    releasePagedItems();
+
+    this.items.set(items);
+    updateFilterSource();
+    notifyDataSetChanged();
+  }
+
+  /**
+   * Get filter of the items last set on this adapter
+   * <p>
+   * The filter is created by {@link #createFilter()} on first use and
+   * publishes matching items through {@link #setItems(Object[])}. Items set
+   * on this adapter afterwards replace the items being filtered.
+   *
+   * @return filter
+   */
+  public ItemFilter getFilter() {
+    if (filter == null) {
+      filter = createFilter();
+      filter.setItems(items.get());
+    }
+    return filter;
+  }
+
+  /**
+   * Create filter returned from {@link #getFilter()}
+   * <p>
+   * Sub-classes may override this method to return a filter that matches
+   * against a custom search key
+   *
+   * @return filter
+   */
+  protected ItemFilter createFilter() {
+    return new ItemFilter(this);
+  }
+
+  /**
+   * Set items matched by the filter without replacing the items it filters
+   *
+   * @param items
+   */
+  void setFilteredItems(final Object[] items) {
+    publishingFilter = true;
+    try {
+      setItems(items);
+    } finally {
+      publishingFilter = false;
+    }
+  }
+
+  private void updateFilterSource() {
+    if (filter != null && !publishingFilter)
+      filter.setItems(items.get());
+  }
+
+  /**
+   * Set paged items to display
+   * <p>
+   * Items are loaded as they are requested and positions whose page is not
+   * loaded yet are updated via {@link #updatePlaceholder(int, View)}. Item ids
+   * are provided by {@link PagedItems#getItemId(int)}.
+   *
+   * @param items
+   */
+  public void setPagedItems(final PagedItems items) {
+    releasePagedItems();
+
+    this.items.set(null);
+    updateFilterSource();
+    pagedItems = items;
     if (items != null)
-      this.items = items;
-    else
-      this.items = EMPTY;
+      items.setListener(pageListener);
     notifyDataSetChanged();
   }
 
+  /**
+   * Get paged items being displayed
+   *
+   * @return paged items or null if not displaying paged items
+   */
+  public PagedItems getPagedItems() {
+    return pagedItems;
+  }
+
+  private void releasePagedItems() {
+    // The caller owns the paged items and decides when to clear them
+    if (pagedItems != null) {
+      pagedItems.setListener(null);
+      pagedItems = null;
+    }
+  }
+
+  /**
+   * Set provider of the identities used to assign stable item ids
+   *
+   * @param provider
+   * @return this adapter
+   */
+  public SingleTypeAdapter<V> setItemIdProvider(final ItemIdProvider provider) {
+    if (items.setProvider(provider))
+      notifyDataSetChanged();
+    return this;
+  }
+
+  /**
+   * Set items to display after calculating the difference from the current
+   * items on a background thread
+   *
+   * @param items
+   * @param callback
+   */
+  public void setItemsDiffed(final Collection<?> items,
+      final ItemDiff.Callback callback) {
+    setItemsDiffed(ItemArray.toArray(items), callback);
+  }
+
+  /**
+   * Set items to display after calculating the difference from the current
+   * items on a background thread
+   * <p>
+   * The given array must not be modified after calling this method. The
+   * difference is passed to {@link #onItemsDiffed(ItemDiff)} on the main
+   * thread once the new items are in place. A later call to this method or to
+   * {@link #setItems(Object[])} discards any difference still being
+   * calculated.
+   *
+   * @param items
+   * @param callback
+   */
+  public void setItemsDiffed(final Object[] items,
+      final ItemDiff.Callback callback) {
+    if (pagedItems != null) {
+      setItems(items);
+      return;
+    }
+
+    this.items.setDiffed(items, callback, diffListener);
+  }
+
+  /**
+   * Items have been updated from a difference calculated by
+   * {@link #setItemsDiffed(Object[], ItemDiff.Callback)}
+   * <p>
+   * The default behavior is to notify that the data set changed only when the
+   * difference is non-empty. Sub-classes may override this method to dispatch
+   * the individual operations via
+   * {@link ItemDiff#dispatchUpdates(ItemDiff.UpdateListener)}.
+   *
+   * @param diff
+   */
+  protected void onItemsDiffed(final ItemDiff diff) {
+    if (!diff.isEmpty())
+      notifyDataSetChanged();
+  }
+
   @Override
   public int getCount() {
-    return items.length;
+    return pagedItems != null ? pagedItems.size() : items.size();
   }
 
   @SuppressWarnings("unchecked")
   public V getItem(final int position) {
-    return (V) items[position];
+    if (pagedItems != null)
+      return (V) pagedItems.get(position);
+    return (V) items.get(position);
   }
 
   @Override
   public long getItemId(final int position) {
-    return items[position].hashCode();
+    if (pagedItems != null)
+      return pagedItems.getItemId(position);
+    return items.getId(position);
+  }
+
+  /**
+   * Item ids are always stable
+   * <p>
+   * Each item keeps its id for as long as it is displayed, using the identity
+   * from the {@link ItemIdProvider} when one is set and the item itself
+   * otherwise. Ids used to be {@link Object#hashCode()} of the item and were
+   * not reported as stable; repeated items now get distinct ids.
+   * <p>
+   * Ids of {@link PagedItems} are provided by
+   * {@link PagedItems#getItemId(int)}
+   *
+   * @return true
+   */
+  @Override
+  public boolean hasStableIds() {
+    return true;
   }
 
   /**
@@ -162,6 +351,27 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
   protected void update(int position, View view, V item) {
     setCurrentView(view);
     update(position, item);
+    deferUpdate(position, view);
+  }
+
+  @Override
+  protected void updateDeferred(final int position, final View view) {
+    setCurrentView(view);
+    updateDeferred(position, getItem(position));
+  }
+
+  /**
+   * Run the expensive part of updating an item such as loading images
+   * <p>
+   * This method is called after {@link #update(int, Object)} unless the
+   * list is flinging in which case it is called once the list stops if the
+   * row is still visible. The default behavior is to do nothing.
+   *
+   * @param position
+   * @param item
+   */
+  protected void updateDeferred(int position, V item) {
+    // Intentionally left blank
   }
 
   /**
@@ -172,12 +382,37 @@ public abstract class SingleTypeAdapter<V> extends TypeAdapter {
    */
   protected abstract void update(int position, V item);
 
+  /**
+   * Update view for a position whose item has not been loaded yet
+   * <p>
+   * The default behavior is to update the view with a null item
+   *
+   * @param position
+   * @param view
+   */
+  protected void updatePlaceholder(int position, View view) {
+    update(position, view, null);
+  }
+
   @Override
   public View getView(final int position, View convertView,
       final ViewGroup parent) {
-    if (convertView == null)
+    final AdapterMetrics metrics = getMetrics();
+    if (convertView == null) {
+      final long start = metrics != null ? metrics.beginInflate(0) : 0;
       convertView = initialize(inflater.inflate(layout, null));
-    update(position, convertView, getItem(position));
+      if (metrics != null)
+        metrics.endInflate(0, start);
+    }
+    final long start = metrics != null ? metrics.beginBind(0) : 0;
+    final V item = getItem(position);
+    if (item == null && pagedItems != null
+        && !pagedItems.isLoaded(position))
+      updatePlaceholder(position, convertView);
+    else
+      update(position, convertView, item);
+    if (metrics != null)
+      metrics.endBind(0, start);
     return convertView;
   }
 }
@@ -15,14 +15,21 @@
  */
 package com.github.kevinsawicki.wishlist;
 
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.HONEYCOMB;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.content.Context;
 import android.database.Cursor;
+import android.os.AsyncTask;
+import android.provider.BaseColumns;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
+import java.util.Arrays;
+
 /**
  * Cursor adapter for a single view type
  */
@@ -39,6 +46,39 @@ public abstract class SingleTypeCursorAdapter extends CursorAdapter {
    */
   protected Cursor cursor;
 
+  private Row[] rows;
+
+  private SwapTask swapTask;
+
+  private ItemDiff.UpdateListener updateListener;
+
+  /**
+   * Identity and content hash of a cursor row
+   */
+  private static class Row {
+
+    final long id;
+
+    final int hash;
+
+    Row(final long id, final int hash) {
+      this.id = id;
+      this.hash = hash;
+    }
+  }
+
+  private static final ItemDiff.Callback ROW_CALLBACK = new ItemDiff.Callback() {
+
+    public boolean areItemsTheSame(final Object oldItem, final Object newItem) {
+      return ((Row) oldItem).id == ((Row) newItem).id;
+    }
+
+    public boolean areContentsTheSame(final Object oldItem,
+        final Object newItem) {
+      return ((Row) oldItem).hash == ((Row) newItem).hash;
+    }
+  };
+
   /**
    * Create adapter
    *
@@ -89,6 +129,167 @@ public abstract class SingleTypeCursorAdapter extends CursorAdapter {
     children = childIds;
   }
 
+  /**
+   * Set listener to receive the rows inserted, removed, moved and changed by
+   * each cursor changed with {@link #changeCursorAsync(Cursor)}
+   *
+   * @param listener
+   * @return this adapter
+   */
+  public SingleTypeCursorAdapter setUpdateListener(
+      final ItemDiff.UpdateListener listener) {
+    updateListener = listener;
+    return this;
+  }
+
+  /**
+   * Get hash of the contents of the row the cursor is positioned at
+   * <p>
+   * The default behavior is to hash the value of every column, blobs are
+   * hashed by their bytes. This method is called on a background thread.
+   *
+   * @param cursor
+   * @return hash
+   */
+  protected int getContentHash(final Cursor cursor) {
+    int hash = 1;
+    for (int i = 0; i < cursor.getColumnCount(); i++)
+      if (SDK_INT >= HONEYCOMB)
+        hash = hash * 31 + getValueHash(cursor, i);
+      else
+        hash = hash * 31 + getStringHash(cursor, i);
+    return hash;
+  }
+
+  @TargetApi(HONEYCOMB)
+  private static int getValueHash(final Cursor cursor, final int column) {
+    switch (cursor.getType(column)) {
+    case Cursor.FIELD_TYPE_NULL:
+      return 0;
+    case Cursor.FIELD_TYPE_BLOB:
+      return Arrays.hashCode(cursor.getBlob(column));
+    default:
+      final String value = cursor.getString(column);
+      return value != null ? value.hashCode() : 0;
+    }
+  }
+
+  private static int getStringHash(final Cursor cursor, final int column) {
+    try {
+      final String value = cursor.getString(column);
+      return value != null ? value.hashCode() : 0;
+    } catch (RuntimeException e) {
+      // Column types are not available so blobs are found by failing
+      return Arrays.hashCode(cursor.getBlob(column));
+    }
+  }
+
+  /**
+   * Change to new cursor after filling its window and comparing its rows with
+   * the rows of the current cursor on a background thread
+   * <p>
+   * Rows are matched by their {@link BaseColumns#_ID} column and are changed
+   * if their content hash differs. The old cursor is closed once the new
+   * cursor is in place, a cursor superseded by a later call to this method or
+   * to {@link #swapCursor(Cursor)} before it is in place is closed instead.
+   *
+   * @param newCursor
+   */
+  public void changeCursorAsync(final Cursor newCursor) {
+    cancelSwap();
+
+    swapTask = new SwapTask(newCursor);
+    AsyncTaskUtils.executeTask(swapTask);
+  }
+
+  /**
+   * Cursor was changed by {@link #changeCursorAsync(Cursor)}
+   * <p>
+   * The default behavior is to dispatch the difference to the update listener.
+   * The difference is null when the current cursor's rows were not known.
+   *
+   * @param diff
+   */
+  protected void onCursorDiffed(final ItemDiff diff) {
+    if (diff != null && updateListener != null)
+      diff.dispatchUpdates(updateListener);
+  }
+
+  private void cancelSwap() {
+    if (swapTask != null) {
+      swapTask.cancel(false);
+      swapTask = null;
+    }
+  }
+
+  @Override
+  public Cursor swapCursor(final Cursor newCursor) {
+    cancelSwap();
+    rows = null;
+    return super.swapCursor(newCursor);
+  }
+
+  private class SwapTask extends AsyncTask<Void, Void, Row[]> {
+
+    private final Cursor newCursor;
+
+    private final Row[] oldRows;
+
+    private ItemDiff diff;
+
+    private SwapTask(final Cursor newCursor) {
+      this.newCursor = newCursor;
+      oldRows = rows;
+    }
+
+    @Override
+    protected Row[] doInBackground(final Void... params) {
+      if (newCursor == null)
+        return new Row[0];
+
+      try {
+        final Row[] newRows = new Row[newCursor.getCount()];
+        final int idColumn = newCursor.getColumnIndexOrThrow(BaseColumns._ID);
+        for (int i = 0; i < newRows.length && !isCancelled(); i++) {
+          newCursor.moveToPosition(i);
+          newRows[i] = new Row(newCursor.getLong(idColumn),
+              getContentHash(newCursor));
+        }
+        // Leave the window filled with the first rows to be bound
+        newCursor.moveToFirst();
+        if (oldRows != null && !isCancelled())
+          diff = ItemDiff.calculate(oldRows, newRows, ROW_CALLBACK, true);
+        return newRows;
+      } catch (RuntimeException e) {
+        LogUtils.e("Reading cursor failed", e);
+        return null;
+      }
+    }
+
+    @Override
+    protected void onCancelled() {
+      if (newCursor != null)
+        newCursor.close();
+    }
+
+    @Override
+    protected void onPostExecute(final Row[] newRows) {
+      if (swapTask != this) {
+        if (newCursor != null)
+          newCursor.close();
+        return;
+      }
+
+      swapTask = null;
+      final Cursor oldCursor = SingleTypeCursorAdapter.super
+          .swapCursor(newCursor);
+      rows = newRows;
+      if (oldCursor != null && oldCursor != newCursor)
+        oldCursor.close();
+      onCursorDiffed(newRows != null ? diff : null);
+    }
+  }
+
   /**
    * Get child view ids to store
    * <p>
@@ -122,17 +323,23 @@ public abstract class SingleTypeCursorAdapter extends CursorAdapter {
 
   /**
    * Set text on child view to string of column index
+   * <p>
+   * The string is copied into a buffer owned by the child view instead of
+   * being allocated
    *
    * @param childViewIndex
    * @param columnIndex
    * @return text view
    */
   protected TextView setText(final int childViewIndex, final int columnIndex) {
-    return updater.setText(childViewIndex, cursor.getString(columnIndex));
+    return updater.setText(childViewIndex, cursor, columnIndex);
   }
 
   /**
    * Set text on child view to number at column index
+   * <p>
+   * The number is formatted into a buffer owned by the child view instead of
+   * being allocated
    *
    * @param childViewIndex
    * @param columnIndex
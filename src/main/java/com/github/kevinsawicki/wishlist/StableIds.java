@@ -0,0 +1,239 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of collision-free ids for adapter items
+ * <p>
+ * Ids are assigned from a counter and remembered per item identity in an open
+ * addressing table so an item keeps its id when the items are replaced with a
+ * set that still contains it. Repeated identities are told apart by their
+ * occurrence so every item in use has a distinct id.
+ */
+public class StableIds {
+
+  private static final Object NULL = new Object();
+
+  private static final int MIN_CAPACITY = 16;
+
+  private static int hash(final Object key, final int occurrence) {
+    int hash = key.hashCode() + occurrence * 0x9E3779B9;
+    hash ^= hash >>> 16;
+    hash *= 0x85EBCA6B;
+    return hash ^ hash >>> 13;
+  }
+
+  /**
+   * Open addressing table of identity and occurrence to id
+   */
+  private static class Table {
+
+    private final Object[] keys;
+
+    private final int[] occurrences;
+
+    private final long[] ids;
+
+    private final int mask;
+
+    private int size;
+
+    private Table(final int expected) {
+      int capacity = MIN_CAPACITY;
+      while (capacity < expected * 2)
+        capacity <<= 1;
+      keys = new Object[capacity];
+      occurrences = new int[capacity];
+      ids = new long[capacity];
+      mask = capacity - 1;
+    }
+
+    private int find(final Object key, final int occurrence) {
+      int index = hash(key, occurrence) & mask;
+      while (keys[index] != null) {
+        if (occurrences[index] == occurrence && keys[index].equals(key))
+          return index;
+        index = (index + 1) & mask;
+      }
+      return -1 - index;
+    }
+
+    private Table put(final int slot, final Object key, final int occurrence,
+        final long id) {
+      if ((size + 1) * 2 > keys.length) {
+        final Table grown = new Table(keys.length);
+        for (int i = 0; i < keys.length; i++)
+          if (keys[i] != null)
+            grown.put(grown.find(keys[i], occurrences[i]), keys[i],
+                occurrences[i], ids[i]);
+        return grown.put(grown.find(key, occurrence), key, occurrence, id);
+      }
+
+      final int index = -1 - slot;
+      keys[index] = key;
+      occurrences[index] = occurrence;
+      ids[index] = id;
+      size++;
+      return this;
+    }
+
+    private void remove(final int index) {
+      keys[index] = null;
+      size--;
+
+      // Shift back following entries that can no longer be reached
+      int hole = index;
+      int next = index;
+      while (keys[next = (next + 1) & mask] != null) {
+        final int ideal = hash(keys[next], occurrences[next]) & mask;
+        if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+          keys[hole] = keys[next];
+          occurrences[hole] = occurrences[next];
+          ids[hole] = ids[next];
+          keys[next] = null;
+          hole = next;
+        }
+      }
+    }
+  }
+
+  private ItemIdProvider provider;
+
+  private Table current = new Table(0);
+
+  private Table previous = new Table(0);
+
+  private long nextId = 1;
+
+  private int maxOccurrence;
+
+  /**
+   * Set provider of item identities
+   * <p>
+   * Items are their own identity when no provider is set
+   *
+   * @param provider
+   * @return this registry
+   */
+  public StableIds setProvider(final ItemIdProvider provider) {
+    this.provider = provider;
+    return this;
+  }
+
+  private Object identity(final Object item) {
+    final Object identity = provider != null ? provider.getIdentity(item)
+        : item;
+    return identity != null ? identity : NULL;
+  }
+
+  /**
+   * Acquire id for item
+   * <p>
+   * The id that the same occurrence of the item's identity had before the last
+   * call to {@link #retire()} is reused, otherwise a new id is assigned
+   *
+   * @param item
+   * @return id
+   */
+  public long acquire(final Object item) {
+    final Object key = identity(item);
+    int occurrence = 0;
+    int slot;
+    while ((slot = current.find(key, occurrence)) >= 0)
+      occurrence++;
+    return acquire(key, occurrence, slot);
+  }
+
+  private long acquire(final Object key, final int occurrence,
+      final int slot) {
+    final int retired = previous.find(key, occurrence);
+    final long id = retired >= 0 ? previous.ids[retired] : nextId++;
+    current = current.put(slot, key, occurrence, id);
+    maxOccurrence = Math.max(maxOccurrence, occurrence);
+    return id;
+  }
+
+  /**
+   * Release id acquired for item that is no longer in use
+   * <p>
+   * The registry stops referencing the item's identity once all of its
+   * occurrences are released
+   *
+   * @param item
+   * @param id
+   * @return this registry
+   */
+  public StableIds release(final Object item, final long id) {
+    final Object key = identity(item);
+    for (int occurrence = 0; occurrence <= maxOccurrence; occurrence++) {
+      final int slot = current.find(key, occurrence);
+      if (slot >= 0 && current.ids[slot] == id) {
+        // The freed occurrence is reacquired by the next equal identity
+        current.remove(slot);
+        break;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Retire all ids in use so they can be reacquired by the next items
+   *
+   * @return this registry
+   */
+  public StableIds retire() {
+    previous = current;
+    current = new Table(previous.size);
+    maxOccurrence = 0;
+    return this;
+  }
+
+  /**
+   * Assign ids to given items, reusing ids of the items previously assigned
+   *
+   * @param items
+   * @return ids indexed by item position
+   */
+  public long[] assign(final Object[] items) {
+    retire();
+    final long[] ids = new long[items.length];
+    // Count occurrences as we go instead of probing for each earlier one
+    final Map<Object, Integer> counts = new HashMap<Object, Integer>();
+    for (int i = 0; i < items.length; i++) {
+      final Object key = identity(items[i]);
+      final Integer count = counts.get(key);
+      final int occurrence = count != null ? count : 0;
+      counts.put(key, occurrence + 1);
+      ids[i] = acquire(key, occurrence, current.find(key, occurrence));
+    }
+    return ids;
+  }
+
+  /**
+   * Forget all ids
+   *
+   * @return this registry
+   */
+  public StableIds clear() {
+    current = new Table(0);
+    previous = new Table(0);
+    maxOccurrence = 0;
+    return this;
+  }
+}
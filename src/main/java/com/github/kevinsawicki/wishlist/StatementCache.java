@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.v4.util.LruCache;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of compiled statements keyed by SQL
+ * <p>
+ * A statement is checked out with {@link #acquire(SQLiteDatabase, String)}
+ * for exclusive use by the calling thread and returned with
+ * {@link #release(SQLiteStatement)}. When a statement for the same SQL is
+ * already checked out a new statement is compiled, only one idle statement
+ * per SQL is kept. Cached statements are closed when evicted, when the cache
+ * is cleared, and when a different database instance is used.
+ */
+public class StatementCache {
+
+  private final LruCache<String, SQLiteStatement> idle;
+
+  private final Map<SQLiteStatement, String> checkedOut =
+      new IdentityHashMap<SQLiteStatement, String>();
+
+  private SQLiteDatabase database;
+
+  private long hits;
+
+  private long misses;
+
+  /**
+   * Create cache holding at most the given number of idle statements
+   *
+   * @param maxSize
+   */
+  public StatementCache(final int maxSize) {
+    idle = new LruCache<String, SQLiteStatement>(maxSize) {
+
+      @Override
+      protected void entryRemoved(final boolean evicted, final String key,
+          final SQLiteStatement oldValue, final SQLiteStatement newValue) {
+        // Statements removed by acquire are in use and must stay open
+        if (evicted || newValue != null)
+          oldValue.close();
+      }
+    };
+  }
+
+  /**
+   * Check out statement for SQL compiling it if no idle statement is cached
+   *
+   * @param database
+   * @param sql
+   * @return statement with no bindings
+   */
+  public synchronized SQLiteStatement acquire(final SQLiteDatabase database,
+      final String sql) {
+    if (database != this.database) {
+      clear();
+      this.database = database;
+    }
+
+    SQLiteStatement statement = idle.remove(sql);
+    if (statement != null)
+      hits++;
+    else {
+      misses++;
+      statement = database.compileStatement(sql);
+    }
+    checkedOut.put(statement, sql);
+    return statement;
+  }
+
+  /**
+   * Return statement acquired from this cache
+   * <p>
+   * The statement must not be used after being released
+   *
+   * @param statement
+   * @return this cache
+   */
+  public synchronized StatementCache release(final SQLiteStatement statement) {
+    if (!checkedOut.containsKey(statement))
+      throw new IllegalArgumentException("Statement was not acquired");
+
+    // Statements acquired before the cache was cleared have no SQL mapped
+    final String sql = checkedOut.remove(statement);
+    if (sql == null || idle.get(sql) != null)
+      statement.close();
+    else {
+      statement.clearBindings();
+      idle.put(sql, statement);
+    }
+    return this;
+  }
+
+  /**
+   * Close all idle statements
+   * <p>
+   * Statements checked out are closed when released
+   *
+   * @return this cache
+   */
+  public synchronized StatementCache clear() {
+    idle.evictAll();
+    for (Map.Entry<SQLiteStatement, String> entry : checkedOut.entrySet())
+      entry.setValue(null);
+    database = null;
+    return this;
+  }
+
+  /**
+   * Get number of acquired statements that were cached
+   *
+   * @return hit count
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Get number of acquired statements that were compiled
+   *
+   * @return miss count
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Get number of idle statements cached
+   *
+   * @return idle count
+   */
+  public int getIdleCount() {
+    return idle.size();
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.os.AsyncTask;
+import android.support.v4.util.LruCache;
+import android.text.Layout.Alignment;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+/**
+ * Least recently used cache of text layouts keyed by text, width and paint
+ * <p>
+ * Layouts can be precomputed on a background thread with
+ * {@link #precompute(CharSequence[], TextPaint, int)} and then displayed in a
+ * {@link TextLayoutView} when rows are bound, moving line breaking and text
+ * measurement off the main thread. Paints are compared by identity and must
+ * not be modified once used with this cache.
+ */
+public class TextLayoutCache {
+
+  private static class Key {
+
+    final CharSequence text;
+
+    final TextPaint paint;
+
+    final int width;
+
+    final int hash;
+
+    Key(final CharSequence text, final TextPaint paint, final int width) {
+      this.text = text;
+      this.paint = paint;
+      this.width = width;
+      hash = (text.hashCode() * 31 + width) * 31
+          + System.identityHashCode(paint);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+      if (object == this)
+        return true;
+      if (!(object instanceof Key))
+        return false;
+      final Key other = (Key) object;
+      return hash == other.hash && width == other.width
+          && paint == other.paint && text.equals(other.text);
+    }
+  }
+
+  private final LruCache<Key, StaticLayout> layouts;
+
+  /**
+   * Create cache holding at most the given number of characters of laid out
+   * text
+   *
+   * @param maxCharacters
+   */
+  public TextLayoutCache(final int maxCharacters) {
+    layouts = new LruCache<Key, StaticLayout>(maxCharacters) {
+
+      @Override
+      protected int sizeOf(final Key key, final StaticLayout value) {
+        return Math.max(1, key.text.length());
+      }
+    };
+  }
+
+  /**
+   * Create layout of text
+   * <p>
+   * The default behavior matches the default layout of a
+   * {@link android.widget.TextView}
+   *
+   * @param text
+   * @param paint
+   * @param width
+   * @return layout
+   */
+  protected StaticLayout createLayout(final CharSequence text,
+      final TextPaint paint, final int width) {
+    return new StaticLayout(text, paint, Math.max(0, width),
+        Alignment.ALIGN_NORMAL, 1, 0, true);
+  }
+
+  /**
+   * Get cached layout of text
+   *
+   * @param text
+   * @param paint
+   * @param width
+   * @return layout or null if not cached
+   */
+  public StaticLayout peek(final CharSequence text, final TextPaint paint,
+      final int width) {
+    return layouts.get(new Key(text, paint, width));
+  }
+
+  /**
+   * Get layout of text creating and caching it if needed
+   *
+   * @param text
+   * @param paint
+   * @param width
+   * @return layout
+   */
+  public StaticLayout get(final CharSequence text, final TextPaint paint,
+      final int width) {
+    final Key key = new Key(text, paint, width);
+    StaticLayout layout = layouts.get(key);
+    if (layout == null) {
+      layout = createLayout(text, paint, width);
+      layouts.put(key, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Create and cache layouts of all given texts on a background thread
+   * <p>
+   * The given array must not be modified after calling this method
+   *
+   * @param texts
+   * @param paint
+   * @param width
+   * @return this cache
+   */
+  public TextLayoutCache precompute(final CharSequence[] texts,
+      final TextPaint paint, final int width) {
+    AsyncTaskUtils.executeTask(new AsyncTask<Void, Void, Void>() {
+
+      @Override
+      protected Void doInBackground(final Void... params) {
+        for (CharSequence text : texts)
+          if (text != null)
+            get(text, paint, width);
+        return null;
+      }
+    });
+    return this;
+  }
+
+  /**
+   * Remove all cached layouts, for example after the configuration changed
+   *
+   * @return this cache
+   */
+  public TextLayoutCache clear() {
+    layouts.evictAll();
+    return this;
+  }
+}
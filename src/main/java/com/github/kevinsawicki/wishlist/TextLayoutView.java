@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * View that draws a text layout computed elsewhere, such as by a
+ * {@link TextLayoutCache}
+ * <p>
+ * The view is as tall as the layout plus padding and draws nothing until a
+ * layout is set.
+ */
+public class TextLayoutView extends View {
+
+  private Layout layout;
+
+  /**
+   * @param context
+   */
+  public TextLayoutView(final Context context) {
+    super(context);
+  }
+
+  /**
+   * @param context
+   * @param attrs
+   */
+  public TextLayoutView(final Context context, final AttributeSet attrs) {
+    super(context, attrs);
+  }
+
+  /**
+   * @param context
+   * @param attrs
+   * @param defStyle
+   */
+  public TextLayoutView(final Context context, final AttributeSet attrs,
+      final int defStyle) {
+    super(context, attrs, defStyle);
+  }
+
+  /**
+   * Set layout to draw
+   *
+   * @param layout
+   * @return this view
+   */
+  public TextLayoutView setTextLayout(final Layout layout) {
+    if (layout == this.layout)
+      return this;
+
+    final Layout previous = this.layout;
+    this.layout = layout;
+    if (previous == null || layout == null
+        || previous.getHeight() != layout.getHeight()
+        || previous.getWidth() != layout.getWidth())
+      requestLayout();
+    invalidate();
+    return this;
+  }
+
+  /**
+   * Get layout being drawn
+   *
+   * @return layout
+   */
+  public Layout getTextLayout() {
+    return layout;
+  }
+
+  @Override
+  protected void onMeasure(final int widthMeasureSpec,
+      final int heightMeasureSpec) {
+    int width = getPaddingLeft() + getPaddingRight();
+    int height = getPaddingTop() + getPaddingBottom();
+    if (layout != null) {
+      width += layout.getWidth();
+      height += layout.getHeight();
+    }
+    setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+        resolveSize(height, heightMeasureSpec));
+  }
+
+  @Override
+  protected void onDraw(final Canvas canvas) {
+    if (layout == null)
+      return;
+
+    canvas.save();
+    canvas.translate(getPaddingLeft(), getPaddingTop());
+    layout.draw(canvas);
+    canvas.restore();
+  }
+}
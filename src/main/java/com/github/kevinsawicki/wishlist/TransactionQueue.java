@@ -0,0 +1,362 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.kevinsawicki.wishlist.DatabaseHelper.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of transactions performed by a single writer thread
+ * <p>
+ * Transactions submitted within the group window of the first transaction
+ * waiting are performed together inside one database transaction so they
+ * share a single commit. If any of them fails the group is rolled back and
+ * each transaction of the group is run again in its own database transaction
+ * so only the failing transaction fails.
+ */
+public class TransactionQueue {
+
+  private static final Callable<Boolean> NONE = new Callable<Boolean>() {
+
+    public Boolean call() {
+      return false;
+    }
+  };
+
+  private static class Request extends FutureTask<Boolean> {
+
+    final Transaction transaction;
+
+    final String[] tables;
+
+    Request(final Transaction transaction, final String[] tables) {
+      super(NONE);
+      this.transaction = transaction;
+      this.tables = tables;
+    }
+
+    void complete(final boolean committed) {
+      set(committed);
+    }
+
+    void fail(final Throwable cause) {
+      setException(cause);
+    }
+  }
+
+  private final DatabaseHelper helper;
+
+  private final BlockingQueue<Request> queue =
+      new LinkedBlockingQueue<Request>();
+
+  private final AtomicLong commits = new AtomicLong();
+
+  private final AtomicLong committedTransactions = new AtomicLong();
+
+  private final AtomicLong commitNanos = new AtomicLong();
+
+  private volatile long lastCommitNanos;
+
+  private long groupWindowMillis = 2;
+
+  private int maxGroupSize = 64;
+
+  private Thread writer;
+
+  private volatile boolean shutdown;
+
+  /**
+   * Create queue writing to database of helper
+   *
+   * @param helper
+   */
+  public TransactionQueue(final DatabaseHelper helper) {
+    this.helper = helper;
+  }
+
+  /**
+   * Set time to wait for more transactions after the first transaction of a
+   * group is taken from the queue
+   *
+   * @param millis
+   * @return this queue
+   */
+  public TransactionQueue setGroupWindow(final long millis) {
+    groupWindowMillis = Math.max(0, millis);
+    return this;
+  }
+
+  /**
+   * Set maximum number of transactions performed in one database transaction
+   *
+   * @param size
+   * @return this queue
+   */
+  public TransactionQueue setMaxGroupSize(final int size) {
+    maxGroupSize = Math.max(1, size);
+    return this;
+  }
+
+  /**
+   * Submit transaction to be performed on the writer thread
+   * <p>
+   * The returned future completes with true once the transaction is committed,
+   * false if the database could not be opened, or with the exception thrown
+   * by the transaction
+   *
+   * @param transaction
+   * @return future
+   */
+  public Future<Boolean> submit(final Transaction transaction) {
+    return submit(transaction, new String[0]);
+  }
+
+  /**
+   * Submit transaction writing the given tables to be performed on the writer
+   * thread
+   * <p>
+   * Cached query results reading the tables are invalidated through
+   * {@link DatabaseHelper#invalidate(String...)} as soon as the transaction
+   * commits, before its future completes
+   *
+   * @param transaction
+   * @param tables
+   * @return future
+   */
+  public synchronized Future<Boolean> submit(final Transaction transaction,
+      final String... tables) {
+    if (shutdown)
+      throw new IllegalStateException("Queue is shut down");
+
+    final Request request = new Request(transaction, tables);
+    queue.add(request);
+    if (writer == null)
+      startWriter();
+    return request;
+  }
+
+  private void startWriter() {
+    writer = new Thread(new Runnable() {
+
+      public void run() {
+        try {
+          write();
+        } finally {
+          writerExited();
+        }
+      }
+    }, "TransactionQueue");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private synchronized void writerExited() {
+    if (writer != Thread.currentThread())
+      return;
+
+    writer = null;
+    // Replace a writer that stopped while requests are still waiting
+    if (!shutdown && !queue.isEmpty())
+      startWriter();
+  }
+
+  /**
+   * Stop the writer thread after the transactions already submitted are
+   * performed
+   *
+   * @return this queue
+   */
+  public synchronized TransactionQueue shutdown() {
+    shutdown = true;
+    if (writer != null)
+      writer.interrupt();
+    return this;
+  }
+
+  /**
+   * Wait for the writer thread to stop after {@link #shutdown()}
+   *
+   * @return this queue
+   */
+  public TransactionQueue awaitTermination() {
+    final Thread thread;
+    synchronized (this) {
+      thread = writer;
+    }
+    if (thread != null && thread != Thread.currentThread())
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    return this;
+  }
+
+  /**
+   * Get number of transactions waiting to be performed
+   *
+   * @return queue depth
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Get number of database commits
+   *
+   * @return commit count
+   */
+  public long getCommitCount() {
+    return commits.get();
+  }
+
+  /**
+   * Get number of submitted transactions committed
+   *
+   * @return transaction count
+   */
+  public long getCommittedTransactionCount() {
+    return committedTransactions.get();
+  }
+
+  /**
+   * Get duration of the last database transaction
+   *
+   * @return nanoseconds
+   */
+  public long getLastCommitNanos() {
+    return lastCommitNanos;
+  }
+
+  /**
+   * Get average duration of database transactions
+   *
+   * @return nanoseconds
+   */
+  public long getAverageCommitNanos() {
+    final long count = commits.get();
+    return count > 0 ? commitNanos.get() / count : 0;
+  }
+
+  private void write() {
+    final List<Request> group = new ArrayList<Request>();
+    while (!shutdown || !queue.isEmpty()) {
+      try {
+        final Request first = queue.take();
+        group.add(first);
+        final long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(groupWindowMillis);
+        while (group.size() < maxGroupSize) {
+          final Request next = queue.poll(deadline - System.nanoTime(),
+              TimeUnit.NANOSECONDS);
+          if (next == null)
+            break;
+          group.add(next);
+        }
+      } catch (InterruptedException e) {
+        // Perform the group taken so far and check for shutdown
+      }
+
+      if (!group.isEmpty()) {
+        try {
+          perform(group);
+        } catch (Throwable e) {
+          // Keep draining, a request of the group has already been failed
+          for (Request request : group)
+            if (!request.isDone())
+              request.fail(e);
+        }
+        group.clear();
+      }
+    }
+  }
+
+  private void perform(final List<Request> group) {
+    for (int i = group.size() - 1; i >= 0; i--)
+      if (group.get(i).isCancelled())
+        group.remove(i);
+    if (group.isEmpty())
+      return;
+
+    final SQLiteDatabase database = helper.getWritable();
+    if (database == null) {
+      for (Request request : group)
+        request.complete(false);
+      return;
+    }
+
+    final long start = System.nanoTime();
+    Throwable failure = null;
+    try {
+      helper.beginTransaction(database);
+      try {
+        for (Request request : group)
+          request.transaction.perform(database);
+        database.setTransactionSuccessful();
+      } finally {
+        // Commits, so failures to commit are caught below as well
+        database.endTransaction();
+      }
+    } catch (Throwable e) {
+      failure = e;
+    }
+
+    if (failure == null) {
+      recordCommit(start, group.size());
+      for (Request request : group)
+        helper.invalidate(request.tables);
+      for (Request request : group)
+        request.complete(true);
+    } else if (group.size() == 1)
+      group.get(0).fail(failure);
+    else
+      // Isolate the failing transactions by running each on its own
+      for (Request request : group)
+        perform(request);
+  }
+
+  private void perform(final Request request) {
+    final long start = System.nanoTime();
+    try {
+      final boolean committed = helper.run(request.transaction,
+          request.tables);
+      if (committed)
+        recordCommit(start, 1);
+      request.complete(committed);
+    } catch (Throwable e) {
+      request.fail(e);
+    }
+  }
+
+  private void recordCommit(final long start, final int transactions) {
+    final long elapsed = System.nanoTime() - start;
+    lastCommitNanos = elapsed;
+    commitNanos.addAndGet(elapsed);
+    commits.incrementAndGet();
+    committedTransactions.addAndGet(transactions);
+  }
+}
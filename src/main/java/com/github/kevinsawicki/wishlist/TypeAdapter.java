@@ -15,24 +15,120 @@
  */
 package com.github.kevinsawicki.wishlist;
 
+import android.text.Layout;
 import android.view.View;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.BaseAdapter;
 import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.text.NumberFormat;
-
 /**
  * Base adapter
+ * <p>
+ * Binding can be split into an essential pass and a deferred pass by
+ * registering the adapter as the list's {@link OnScrollListener}. While the
+ * list is flinging only the essential pass runs and the deferred pass runs
+ * once the list stops for the rows that are still visible.
  */
-public abstract class TypeAdapter extends BaseAdapter {
+public abstract class TypeAdapter extends BaseAdapter implements
+    OnScrollListener {
 
   /**
    * Updater for current view
    */
   protected final ViewUpdater updater = new ViewUpdater();
 
+  private AdapterMetrics metrics;
+
+  private boolean deferring;
+
+  /**
+   * Set metrics to record view inflation and binding to
+   * <p>
+   * No metrics are recorded by default
+   *
+   * @param metrics
+   * @return this adapter
+   */
+  public TypeAdapter setMetrics(final AdapterMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Get metrics being recorded
+   *
+   * @return metrics or null if not recording
+   */
+  public AdapterMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Is the deferred update of rows currently postponed?
+   *
+   * @return true if the list is flinging, false otherwise
+   */
+  protected boolean isDeferring() {
+    return deferring;
+  }
+
+  public void onScrollStateChanged(final AbsListView view,
+      final int scrollState) {
+    final boolean wasDeferring = deferring;
+    deferring = scrollState == SCROLL_STATE_FLING;
+    if (!wasDeferring || deferring)
+      return;
+
+    for (int i = 0; i < view.getChildCount(); i++) {
+      final View child = view.getChildAt(i);
+      final Object position = child.getTag(R.id.wishlist_deferred_position);
+      if (position instanceof Integer) {
+        child.setTag(R.id.wishlist_deferred_position, null);
+        final int deferredPosition = (Integer) position;
+        if (deferredPosition < getCount())
+          updateDeferred(deferredPosition, child);
+      }
+    }
+  }
+
+  public void onScroll(final AbsListView view, final int firstVisibleItem,
+      final int visibleItemCount, final int totalItemCount) {
+    // Intentionally left blank
+  }
+
+  /**
+   * Run the deferred update of a row now or postpone it until the list stops
+   * flinging
+   * <p>
+   * Sub-classes should call this method after the essential update of a row
+   *
+   * @param position
+   * @param view
+   */
+  protected void deferUpdate(final int position, final View view) {
+    if (deferring)
+      view.setTag(R.id.wishlist_deferred_position, position);
+    else {
+      view.setTag(R.id.wishlist_deferred_position, null);
+      updateDeferred(position, view);
+    }
+  }
+
+  /**
+   * Run deferred update of row
+   * <p>
+   * The default behavior is to do nothing
+   *
+   * @param position
+   * @param view
+   */
+  protected void updateDeferred(final int position, final View view) {
+    // Intentionally left blank
+  }
+
   /**
    * Initialize view by binding indexed child views to tags on the root view
    * <p>
@@ -180,8 +276,8 @@ public abstract class TypeAdapter extends BaseAdapter {
   /**
    * Set text on text view to be formatted version of given integer number
    * <p>
-   * This method uses the formatter returned from
-   * {@link NumberFormat#getIntegerInstance()}
+   * This method uses an {@link IntegerFormatter} for the default locale and
+   * does not allocate
    *
    * @param childViewIndex
    * @param number
@@ -194,8 +290,8 @@ public abstract class TypeAdapter extends BaseAdapter {
   /**
    * Set text on text view to be formatted version of given integer number
    * <p>
-   * This method uses the formatter returned from
-   * {@link NumberFormat#getIntegerInstance()}
+   * This method uses an {@link IntegerFormatter} for the default locale and
+   * does not allocate
    *
    * @param parentView
    * @param childViewIndex
@@ -281,6 +377,31 @@ public abstract class TypeAdapter extends BaseAdapter {
     return updater.setChecked(parentView, childViewIndex, checked);
   }
 
+  /**
+   * Set layout to draw on the {@link TextLayoutView} at given index
+   *
+   * @param childViewIndex
+   * @param layout
+   * @return text layout view
+   */
+  protected TextLayoutView setTextLayout(final int childViewIndex,
+      final Layout layout) {
+    return updater.setTextLayout(childViewIndex, layout);
+  }
+
+  /**
+   * Set layout to draw on the {@link TextLayoutView} at given index
+   *
+   * @param parentView
+   * @param childViewIndex
+   * @param layout
+   * @return text layout view
+   */
+  protected TextLayoutView setTextLayout(final View parentView,
+      final int childViewIndex, final Layout layout) {
+    return updater.setTextLayout(parentView, childViewIndex, layout);
+  }
+
   /**
    * Set the text on the text view if it is non-empty and make the view gone if
    * it is empty
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.kevinsawicki.wishlist;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Items with view types and stable ids stored in parallel arrays
+ * <p>
+ * Storing the columns in growable arrays avoids allocating a wrapper per item
+ * and keeps lookups by position to a single array access.
+ * <p>
+ * The arrays are gap buffers: unused capacity is kept as a gap at the position
+ * of the last insertion or removal. Edits at or near that position, such as
+ * appending or repeatedly inserting into the same region, only shift the
+ * items between the old and new gap positions instead of every later item.
+ */
+class TypedItems {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final StableIds stableIds = new StableIds();
+
+  private int[] types;
+
+  private Object[] items;
+
+  private long[] ids;
+
+  private int gapStart;
+
+  private int gapEnd;
+
+  /**
+   * Create empty items
+   */
+  TypedItems() {
+    types = new int[MIN_CAPACITY];
+    items = new Object[MIN_CAPACITY];
+    ids = new long[MIN_CAPACITY];
+    gapEnd = MIN_CAPACITY;
+  }
+
+  /**
+   * Set provider of the identities of items added afterwards
+   *
+   * @param provider
+   */
+  void setProvider(final ItemIdProvider provider) {
+    stableIds.setProvider(provider);
+  }
+
+  /**
+   * @return number of items
+   */
+  int size() {
+    return items.length - (gapEnd - gapStart);
+  }
+
+  private int index(final int position) {
+    if (position < 0 || position >= size())
+      throw new IndexOutOfBoundsException("Position: " + position + " Size: "
+          + size());
+    return position < gapStart ? position : position + gapEnd - gapStart;
+  }
+
+  /**
+   * @param position
+   * @return view type of item at position
+   */
+  int getType(final int position) {
+    return types[index(position)];
+  }
+
+  /**
+   * @param position
+   * @return item at position
+   */
+  Object getItem(final int position) {
+    return items[index(position)];
+  }
+
+  /**
+   * @param position
+   * @return stable id of item at position
+   */
+  long getId(final int position) {
+    return ids[index(position)];
+  }
+
+  private void moveGap(final int position) {
+    if (position < gapStart) {
+      final int count = gapStart - position;
+      final int to = gapEnd - count;
+      System.arraycopy(types, position, types, to, count);
+      System.arraycopy(items, position, items, to, count);
+      System.arraycopy(ids, position, ids, to, count);
+      Arrays.fill(items, position, Math.min(gapStart, to), null);
+      gapStart = position;
+      gapEnd = to;
+    } else if (position > gapStart) {
+      final int count = position - gapStart;
+      System.arraycopy(types, gapEnd, types, gapStart, count);
+      System.arraycopy(items, gapEnd, items, gapStart, count);
+      System.arraycopy(ids, gapEnd, ids, gapStart, count);
+      Arrays.fill(items, Math.max(gapEnd, position), gapEnd + count, null);
+      gapStart = position;
+      gapEnd += count;
+    }
+  }
+
+  private void ensureGap(final int length) {
+    final int gap = gapEnd - gapStart;
+    if (length <= gap)
+      return;
+
+    final int size = items.length - gap;
+    final int capacity = Math.max(size + length, items.length
+        + (items.length >> 1));
+    final int tail = items.length - gapEnd;
+    final int newGapEnd = capacity - tail;
+
+    final int[] newTypes = new int[capacity];
+    System.arraycopy(types, 0, newTypes, 0, gapStart);
+    System.arraycopy(types, gapEnd, newTypes, newGapEnd, tail);
+    types = newTypes;
+
+    final Object[] newItems = new Object[capacity];
+    System.arraycopy(items, 0, newItems, 0, gapStart);
+    System.arraycopy(items, gapEnd, newItems, newGapEnd, tail);
+    items = newItems;
+
+    final long[] newIds = new long[capacity];
+    System.arraycopy(ids, 0, newIds, 0, gapStart);
+    System.arraycopy(ids, gapEnd, newIds, newGapEnd, tail);
+    ids = newIds;
+
+    gapEnd = newGapEnd;
+  }
+
+  /**
+   * Append item
+   *
+   * @param type
+   * @param item
+   */
+  void add(final int type, final Object item) {
+    insert(size(), type, item, stableIds.acquire(item));
+  }
+
+  /**
+   * Insert item at position
+   *
+   * @param position
+   * @param type
+   * @param item
+   */
+  void insert(final int position, final int type, final Object item) {
+    insert(position, type, item, stableIds.acquire(item));
+  }
+
+  private void insert(final int position, final int type, final Object item,
+      final long id) {
+    if (position < 0 || position > size())
+      throw new IndexOutOfBoundsException("Position: " + position + " Size: "
+          + size());
+
+    ensureGap(1);
+    moveGap(position);
+    types[gapStart] = type;
+    items[gapStart] = item;
+    ids[gapStart] = id;
+    gapStart++;
+  }
+
+  /**
+   * Append items all of the given type
+   *
+   * @param type
+   * @param added
+   * @return number of items added
+   */
+  int addAll(final int type, final Object[] added) {
+    if (added == null)
+      return 0;
+
+    final int count = added.length;
+    ensureGap(count);
+    moveGap(size());
+    System.arraycopy(added, 0, items, gapStart, count);
+    Arrays.fill(types, gapStart, gapStart + count, type);
+    for (int i = gapStart; i < gapStart + count; i++)
+      ids[i] = stableIds.acquire(items[i]);
+    gapStart += count;
+    return count;
+  }
+
+  /**
+   * Append items all of the given type
+   *
+   * @param type
+   * @param added
+   * @return number of items added
+   */
+  int addAll(final int type, final Collection<?> added) {
+    return added != null ? addAll(type, added.toArray()) : 0;
+  }
+
+  /**
+   * Remove item at position and release its id
+   *
+   * @param position
+   * @return true if removed, false if the position is out of range
+   */
+  boolean remove(final int position) {
+    if (position < 0 || position >= size())
+      return false;
+
+    final int index = index(position);
+    stableIds.release(items[index], ids[index]);
+    removeAt(position);
+    return true;
+  }
+
+  private void removeAt(final int position) {
+    moveGap(position);
+    items[gapEnd++] = null;
+  }
+
+  /**
+   * Move item keeping its id
+   * <p>
+   * Nothing is changed unless both positions are less than {@link #size()}
+   *
+   * @param fromPosition
+   * @param toPosition
+   * @return true if moved, false if the positions are equal or out of range
+   */
+  boolean move(final int fromPosition, final int toPosition) {
+    final int size = size();
+    if (fromPosition == toPosition || fromPosition < 0 || fromPosition >= size
+        || toPosition < 0 || toPosition >= size)
+      return false;
+
+    final int index = index(fromPosition);
+    final int type = types[index];
+    final Object item = items[index];
+    final long id = ids[index];
+    removeAt(fromPosition);
+    insert(toPosition, type, item, id);
+    return true;
+  }
+
+  /**
+   * Remove all items and retire their ids
+   */
+  void clear() {
+    Arrays.fill(items, null);
+    gapStart = 0;
+    gapEnd = items.length;
+    stableIds.retire();
+  }
+}
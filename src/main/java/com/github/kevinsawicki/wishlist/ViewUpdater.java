@@ -15,26 +15,179 @@
  */
 package com.github.kevinsawicki.wishlist;
 
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.text.Layout;
 import android.text.TextUtils;
-import android.text.format.DateUtils;
 import android.view.View;
 import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.text.NumberFormat;
+import java.util.Locale;
 
 /**
  * Updater for child views indexed from a root view
  */
 public class ViewUpdater {
 
+  /**
+   * State of the indexed child views of a root view
+   * <p>
+   * Instances are stored as a keyed tag on the root view and hold the
+   * character buffers reused when binding the row. When memoizing, the text and
+   * numbers last bound are also remembered to skip widget calls that would not
+   * change what is displayed. Visibility and checked states are compared
+   * against the child views themselves since users can change them directly.
+   */
+  public static class RowState {
+
+    private static final byte NONE = 0;
+
+    private static final byte TEXT = 1;
+
+    private static final byte RESOURCE = 2;
+
+    private static final byte NUMBER = 3;
+
+    private final byte[] kinds;
+
+    private final long[] values;
+
+    private final CharSequence[] texts;
+
+    private final char[][] buffers;
+
+    private CharArrayBuffer[] cursorBuffers;
+
+    private int generation;
+
+    /**
+     * Create state for given number of child views
+     *
+     * @param size
+     */
+    public RowState(final int size) {
+      kinds = new byte[size];
+      values = new long[size];
+      texts = new CharSequence[size];
+      buffers = new char[size][];
+    }
+
+    /**
+     * Get character buffer owned by child view at index
+     * <p>
+     * Text views given the buffer via {@link TextView#setText(char[], int, int)}
+     * keep a reference to it, so each buffer must only be used for its own
+     * child view
+     *
+     * @param childViewIndex
+     * @param length
+     *          minimum length
+     * @return buffer
+     */
+    public char[] getBuffer(final int childViewIndex, final int length) {
+      char[] buffer = buffers[childViewIndex];
+      if (buffer == null || buffer.length < length) {
+        buffer = new char[length];
+        buffers[childViewIndex] = buffer;
+      }
+      return buffer;
+    }
+
+    /**
+     * Get cursor buffer owned by child view at index
+     * <p>
+     * The buffer shares its initial array with {@link #getBuffer(int, int)}
+     * and is grown by the cursor when a longer string is copied into it
+     *
+     * @param childViewIndex
+     * @return buffer
+     */
+    public CharArrayBuffer getCursorBuffer(final int childViewIndex) {
+      if (cursorBuffers == null)
+        cursorBuffers = new CharArrayBuffer[kinds.length];
+      CharArrayBuffer buffer = cursorBuffers[childViewIndex];
+      if (buffer == null) {
+        buffer = new CharArrayBuffer(getBuffer(childViewIndex,
+            IntegerFormatter.MAX_LENGTH));
+        cursorBuffers[childViewIndex] = buffer;
+      }
+      return buffer;
+    }
+
+    /**
+     * Forget value last bound to child view at index
+     *
+     * @param childViewIndex
+     * @return this state
+     */
+    public RowState forget(final int childViewIndex) {
+      kinds[childViewIndex] = NONE;
+      texts[childViewIndex] = null;
+      return this;
+    }
+
+    /**
+     * Forget all values last bound to child views
+     *
+     * @return this state
+     */
+    public RowState clear() {
+      for (int i = 0; i < kinds.length; i++)
+        forget(i);
+      return this;
+    }
+
+    private boolean bindText(final int index, final CharSequence text) {
+      // Other char sequences may be mutated and bound again so they are
+      // always applied
+      if (text != null && !(text instanceof String)) {
+        forget(index);
+        return true;
+      }
+
+      if (kinds[index] == TEXT) {
+        final CharSequence bound = texts[index];
+        if (bound == null ? text == null : bound.equals(text))
+          return false;
+      }
+      kinds[index] = TEXT;
+      texts[index] = text;
+      return true;
+    }
+
+    private boolean bindValue(final int index, final byte kind,
+        final long value) {
+      if (kinds[index] == kind && values[index] == value)
+        return false;
+      kinds[index] = kind;
+      values[index] = value;
+      texts[index] = null;
+      return true;
+    }
+  }
+
   /**
    * Number formatter for integers
+   * <p>
+   * This formatter is shared and is not thread-safe, use
+   * {@link IntegerFormatter#get()} to format numbers off the main thread
    */
   public static final NumberFormat FORMAT_INT = NumberFormat
       .getIntegerInstance();
 
+  private IntegerFormatter numberFormatter;
+
+  private boolean memoizing;
+
+  private int generation;
+
+  private long appliedUpdates;
+
+  private long skippedUpdates;
+
   /**
    * Root view currently being updated
    */
@@ -45,6 +198,122 @@ public class ViewUpdater {
    */
   public View[] childViews;
 
+  /**
+   * State of the child views currently being updated
+   */
+  public RowState rowState;
+
+  /**
+   * Set whether values bound to child views are remembered so that updates
+   * that would not change a child view are skipped
+   * <p>
+   * Only text bound as a {@link String} is remembered, other char sequences
+   * are always applied since they may have been modified since last bound.
+   * Child views that are also updated without going through this updater
+   * should be forgotten using {@link RowState#forget(int)}
+   *
+   * @param memoizing
+   * @return this updater
+   */
+  public ViewUpdater setMemoizing(final boolean memoizing) {
+    if (memoizing && !this.memoizing)
+      // Values remembered before memoizing was last disabled may be stale
+      generation++;
+    this.memoizing = memoizing;
+    return this;
+  }
+
+  /**
+   * Are values bound to child views remembered?
+   *
+   * @return true if memoizing, false otherwise
+   */
+  public boolean isMemoizing() {
+    return memoizing;
+  }
+
+  /**
+   * Get number of child view updates applied while memoizing
+   *
+   * @return applied update count
+   */
+  public long getAppliedUpdateCount() {
+    return appliedUpdates;
+  }
+
+  /**
+   * Get number of child view updates skipped while memoizing
+   *
+   * @return skipped update count
+   */
+  public long getSkippedUpdateCount() {
+    return skippedUpdates;
+  }
+
+  /**
+   * Reset applied and skipped update counts
+   *
+   * @return this updater
+   */
+  public ViewUpdater resetUpdateCounts() {
+    appliedUpdates = 0;
+    skippedUpdates = 0;
+    return this;
+  }
+
+  /**
+   * Get state of the child views of the given root view
+   *
+   * @param parentView
+   * @return row state
+   */
+  public RowState getRowState(final View parentView) {
+    RowState state = (RowState) parentView.getTag(R.id.wishlist_row_state);
+    if (state == null) {
+      state = new RowState(getChildren(parentView).length);
+      state.generation = generation;
+      parentView.setTag(R.id.wishlist_row_state, state);
+    } else if (state.generation != generation) {
+      state.clear();
+      state.generation = generation;
+    }
+    return state;
+  }
+
+  private boolean count(final boolean changed) {
+    if (changed)
+      appliedUpdates++;
+    else
+      skippedUpdates++;
+    return changed;
+  }
+
+  private boolean textChanged(final RowState state, final int index,
+      final CharSequence text) {
+    return !memoizing || count(state.bindText(index, text));
+  }
+
+  private boolean valueChanged(final RowState state, final int index,
+      final byte kind, final long value) {
+    return !memoizing || count(state.bindValue(index, kind, value));
+  }
+
+  private void setNumber(final TextView textView, final RowState state,
+      final int index, final long number) {
+    if (numberFormatter == null)
+      numberFormatter = new IntegerFormatter(Locale.getDefault());
+    final char[] buffer = state.getBuffer(index, IntegerFormatter.MAX_LENGTH);
+    textView.setText(buffer, 0, numberFormatter.format(number, buffer));
+  }
+
+  private boolean stateChanged(final boolean changed) {
+    return !memoizing || count(changed);
+  }
+
+  private static boolean goneChanged(final View view, final boolean gone) {
+    return view.getVisibility() != (gone ? View.GONE : View.VISIBLE);
+  }
+
   /**
    * Initialize view by binding indexed child views to tags on the root view
    * <p>
@@ -61,6 +330,7 @@ public class ViewUpdater {
     view.setTag(views);
     this.view = view;
     childViews = views;
+    rowState = getRowState(view);
     return view;
   }
 
@@ -72,6 +342,20 @@ public class ViewUpdater {
   public void setCurrentView(final View view) {
     this.view = view;
     childViews = getChildren(view);
+    rowState = getRowState(view);
+  }
+
+  /**
+   * Set current view and its already known indexed children that are
+   * currently being updated
+   *
+   * @param view
+   * @param children
+   */
+  public void setCurrentView(final View view, final View[] children) {
+    this.view = view;
+    childViews = children;
+    rowState = getRowState(view);
   }
 
   /**
@@ -159,7 +443,8 @@ public class ViewUpdater {
    */
   public TextView setText(final int childViewIndex, final CharSequence text) {
     final TextView textView = textView(childViewIndex);
-    textView.setText(text);
+    if (textChanged(rowState, childViewIndex, text))
+      textView.setText(text);
     return textView;
   }
 
@@ -174,7 +459,30 @@ public class ViewUpdater {
   public TextView setText(final View parentView, final int childViewIndex,
       final CharSequence text) {
     final TextView textView = textView(parentView, childViewIndex);
-    textView.setText(text);
+    if (textChanged(getRowState(parentView), childViewIndex, text))
+      textView.setText(text);
+    return textView;
+  }
+
+  /**
+   * Set text on text view at given index to the string in the cursor column
+   * <p>
+   * The string is copied into a character buffer owned by the text view via
+   * {@link Cursor#copyStringToBuffer(int, CharArrayBuffer)} and so no string
+   * is allocated
+   *
+   * @param childViewIndex
+   * @param cursor
+   * @param columnIndex
+   * @return text view
+   */
+  public TextView setText(final int childViewIndex, final Cursor cursor,
+      final int columnIndex) {
+    final TextView textView = textView(childViewIndex);
+    final CharArrayBuffer buffer = rowState.forget(childViewIndex)
+        .getCursorBuffer(childViewIndex);
+    cursor.copyStringToBuffer(columnIndex, buffer);
+    textView.setText(buffer.data, 0, buffer.sizeCopied);
     return textView;
   }
 
@@ -187,7 +495,8 @@ public class ViewUpdater {
    */
   public TextView setText(final int childViewIndex, final int resourceId) {
     final TextView textView = textView(childViewIndex);
-    textView.setText(resourceId);
+    if (valueChanged(rowState, childViewIndex, RowState.RESOURCE, resourceId))
+      textView.setText(resourceId);
     return textView;
   }
 
@@ -202,15 +511,18 @@ public class ViewUpdater {
   public TextView setText(final View parentView, final int childViewIndex,
       final int resourceId) {
     final TextView textView = textView(parentView, childViewIndex);
-    textView.setText(resourceId);
+    if (valueChanged(getRowState(parentView), childViewIndex,
+        RowState.RESOURCE, resourceId))
+      textView.setText(resourceId);
     return textView;
   }
 
   /**
    * Set text on text view to be formatted version of given integer number
    * <p>
-   * This method uses the formatter returned from
-   * {@link NumberFormat#getIntegerInstance()}
+   * This method uses an {@link IntegerFormatter} for the default locale that
+   * writes into a character buffer owned by the text view and so does not
+   * allocate
    *
    * @param childViewIndex
    * @param number
@@ -218,15 +530,17 @@ public class ViewUpdater {
    */
   public TextView setNumber(final int childViewIndex, final long number) {
     final TextView textView = textView(childViewIndex);
-    textView.setText(FORMAT_INT.format(number));
+    if (valueChanged(rowState, childViewIndex, RowState.NUMBER, number))
+      setNumber(textView, rowState, childViewIndex, number);
     return textView;
   }
 
   /**
    * Set text on text view to be formatted version of given integer number
    * <p>
-   * This method uses the formatter returned from
-   * {@link NumberFormat#getIntegerInstance()}
+   * This method uses an {@link IntegerFormatter} for the default locale that
+   * writes into a character buffer owned by the text view and so does not
+   * allocate
    *
    * @param parentView
    * @param childViewIndex
@@ -236,7 +550,9 @@ public class ViewUpdater {
   public TextView setNumber(final View parentView, final int childViewIndex,
       final long number) {
     final TextView textView = textView(parentView, childViewIndex);
-    textView.setText(FORMAT_INT.format(number));
+    final RowState state = getRowState(parentView);
+    if (valueChanged(state, childViewIndex, RowState.NUMBER, number))
+      setNumber(textView, state, childViewIndex, number);
     return textView;
   }
 
@@ -275,7 +591,10 @@ public class ViewUpdater {
    * @return child view
    */
   public View setGone(final int childViewIndex, boolean gone) {
-    return ViewUtils.setGone(view(childViewIndex), gone);
+    final View child = view(childViewIndex);
+    if (stateChanged(goneChanged(child, gone)))
+      ViewUtils.setGone(child, gone);
+    return child;
   }
 
   /**
@@ -288,7 +607,10 @@ public class ViewUpdater {
    */
   public View setGone(final View parentView, final int childViewIndex,
       boolean gone) {
-    return ViewUtils.setGone(view(parentView, childViewIndex), gone);
+    final View child = view(parentView, childViewIndex);
+    if (stateChanged(goneChanged(child, gone)))
+      ViewUtils.setGone(child, gone);
+    return child;
   }
 
   /**
@@ -301,7 +623,8 @@ public class ViewUpdater {
   public CompoundButton setChecked(final int childViewIndex,
       final boolean checked) {
     final CompoundButton button = view(childViewIndex);
-    button.setChecked(checked);
+    if (stateChanged(button.isChecked() != checked))
+      button.setChecked(checked);
     return button;
   }
 
@@ -316,10 +639,37 @@ public class ViewUpdater {
   public CompoundButton setChecked(final View parentView,
       final int childViewIndex, final boolean checked) {
     final CompoundButton button = view(parentView, childViewIndex);
-    button.setChecked(checked);
+    if (stateChanged(button.isChecked() != checked))
+      button.setChecked(checked);
     return button;
   }
 
+  /**
+   * Set layout to draw on the {@link TextLayoutView} at given index
+   *
+   * @param childViewIndex
+   * @param layout
+   * @return text layout view
+   */
+  public TextLayoutView setTextLayout(final int childViewIndex,
+      final Layout layout) {
+    return ((TextLayoutView) childViews[childViewIndex]).setTextLayout(layout);
+  }
+
+  /**
+   * Set layout to draw on the {@link TextLayoutView} at given index
+   *
+   * @param parentView
+   * @param childViewIndex
+   * @param layout
+   * @return text layout view
+   */
+  public TextLayoutView setTextLayout(final View parentView,
+      final int childViewIndex, final Layout layout) {
+    return ((TextLayoutView) getChildren(parentView)[childViewIndex])
+        .setTextLayout(layout);
+  }
+
   /**
    * Set the text on the text view if it is non-empty and make the view gone if
    * it is empty
@@ -331,8 +681,11 @@ public class ViewUpdater {
   public TextView setVisibleText(final int childViewIndex,
       final CharSequence text) {
     TextView view = textView(childViewIndex);
-    view.setText(text);
-    ViewUtils.setGone(view, TextUtils.isEmpty(text));
+    if (textChanged(rowState, childViewIndex, text))
+      view.setText(text);
+    final boolean gone = TextUtils.isEmpty(text);
+    if (stateChanged(goneChanged(view, gone)))
+      ViewUtils.setGone(view, gone);
     return view;
   }
 
@@ -349,28 +702,46 @@ public class ViewUpdater {
   public TextView setVisibleText(final View parentView,
       final int childViewIndex, final CharSequence text) {
     TextView view = textView(parentView, childViewIndex);
-    view.setText(text);
-    ViewUtils.setGone(view, TextUtils.isEmpty(text));
+    if (textChanged(getRowState(parentView), childViewIndex, text))
+      view.setText(text);
+    final boolean gone = TextUtils.isEmpty(text);
+    if (stateChanged(goneChanged(view, gone)))
+      ViewUtils.setGone(view, gone);
     return view;
   }
 
-  private CharSequence formatRelativeTimeSpan(final long time) {
-    return DateUtils.getRelativeTimeSpanString(time);
+  private TextView setRelativeTimeSpan(final TextView textView,
+      final RowState state, final int index, final long time) {
+    // The ticker owns the text from now on so it is no longer memoized
+    state.forget(index);
+    final boolean changed = RelativeTimeTicker.get().setTime(textView, time);
+    if (memoizing)
+      count(changed);
+    return textView;
   }
 
   /**
    * Set relative time span on text view
+   * <p>
+   * The span is formatted through the shared {@link RelativeTimeTicker} which
+   * updates the text view whenever the span changes until it is bound to other
+   * text
    *
    * @param childViewIndex
    * @param time
    * @return text view
    */
   public TextView setRelativeTimeSpan(final int childViewIndex, final long time) {
-    return setText(childViewIndex, formatRelativeTimeSpan(time));
+    return setRelativeTimeSpan(textView(childViewIndex), rowState,
+        childViewIndex, time);
   }
 
   /**
    * Set relative time span on text view
+   * <p>
+   * The span is formatted through the shared {@link RelativeTimeTicker} which
+   * updates the text view whenever the span changes until it is bound to other
+   * text
    *
    * @param parentView
    * @param childViewIndex
@@ -379,6 +750,7 @@ public class ViewUpdater {
    */
   public TextView setRelativeTimeSpan(final View parentView,
       final int childViewIndex, final long time) {
-    return setText(parentView, childViewIndex, formatRelativeTimeSpan(time));
+    return setRelativeTimeSpan(textView(parentView, childViewIndex),
+        getRowState(parentView), childViewIndex, time);
   }
 }